@@ -0,0 +1,7 @@
+#/bin/sh
+# args: queue id, producer delay (BlackHole.consumeCPU tokens)
+for WAIT in busy yield backoff signal
+do
+	echo $WAIT
+	java -XX:+UseCondCardMark -cp target/microbenchmarks.jar -Ddelay.p=$2 psy.lob.saw.queues.benchmarks.handrolled.BlockingQueueThroughput $1 $WAIT > Queue-Blocking-$1-$WAIT-$2.out
+done
@@ -0,0 +1,7 @@
+#/bin/sh
+for BATCH in 1 16 64 256
+do
+	echo clear-$BATCH
+	java -Dclear.batch=$BATCH -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 -p queueType=25,33 ".*\.QueueRoundTripLatency.*" > Queue-Rtt-Clear-$BATCH.out
+	java -Dclear.batch=$BATCH -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 -p queueType=25,33 ".*\.QueueThroughputBusy.*" > Queue-Tpt-Clear-$BATCH.out
+done
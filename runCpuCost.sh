@@ -0,0 +1,7 @@
+#/bin/sh
+# args: producer delay, consumer delay (BlackHole.consumeCPU tokens)
+for WAIT in busy yield backoff
+do
+	echo $WAIT-$1-$2
+	java -Dwait=$WAIT -Ddelay.p=$1 -Ddelay.c=$2 -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 3 ".*\.QueueThroughputBusy.tpt.*" > Queue-Cpu-Cost-$WAIT-$1-$2.out
+done
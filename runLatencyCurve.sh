@@ -0,0 +1,7 @@
+#/bin/sh
+# args: queue ids, RATES (msgs/sec, comma separated) from the environment, default to 1M-50M
+for QID in $@
+do
+	echo $QID
+	java -XX:+UseCondCardMark -cp target/microbenchmarks.jar ${RATES:+-Drates=$RATES} psy.lob.saw.queues.benchmarks.handrolled.QueueLatencyCurve $QID > Queue-Latency-Curve-$QID.out
+done
@@ -0,0 +1,7 @@
+#/bin/sh
+for BATCH in 1 2 4 8 16 32 64
+do
+	echo mc-batch-$BATCH
+	java -Dmc.batch.size=$BATCH -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 -p queueType=33,71 ".*\.QueueRoundTripLatency.*" > Queue-Rtt-Mc-$BATCH.out
+	java -Dmc.batch.size=$BATCH -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 -p queueType=33,71 ".*\.QueueThroughputBusy.*" > Queue-Tpt-Mc-$BATCH.out
+done
@@ -0,0 +1,9 @@
+#/bin/sh
+for PRODUCERS in 1 2 4 8
+do
+	for CONSUMERS in 1 2 4 8
+	do
+		echo $PRODUCERS-$CONSUMERS
+		java -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 -tg $PRODUCERS,$CONSUMERS -p queueType=11,12,53 ".*.QueueContentionThroughputBusy.*" > Queue-Mpmc-$PRODUCERS-$CONSUMERS.out
+	done
+done
@@ -0,0 +1,6 @@
+#/bin/sh
+for PRODUCERS in 1 2 4 8 16
+do
+	echo $PRODUCERS
+	java -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 -tg $PRODUCERS,1 -p queueType=11,12,51 ".*.QueueContentionThroughputBusy.*" > Queue-Mpsc-$PRODUCERS.out
+done
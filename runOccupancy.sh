@@ -0,0 +1,7 @@
+#/bin/sh
+# args: delay of the slow side (BlackHole.consumeCPU tokens), 20 if not given
+DELAY=${1:-20}
+echo occupancy-low-$DELAY
+java -Ddelay.p=$DELAY -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 -p queueType=33,41,42,43,81 ".*\.QueueThroughputBusy.tpt.*" > Queue-Tpt-Occupancy-Low-$DELAY.out
+echo occupancy-high-$DELAY
+java -Ddelay.c=$DELAY -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 -p queueType=33,41,42,43,81 ".*\.QueueThroughputBusy.tpt.*" > Queue-Tpt-Occupancy-High-$DELAY.out
@@ -0,0 +1,6 @@
+#/bin/sh
+for BURST in 1 10 100 1000
+do
+	echo $1-$BURST
+	java -Dburst.size=$BURST -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 ".*.QueueRelayRingLatency.*" > Queue-Relay-Ring-$1-$BURST.out
+done
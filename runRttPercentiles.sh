@@ -0,0 +1,7 @@
+#/bin/sh
+# args: label, [open loop interval in ns, 0 for closed loop]
+for BURST in 1 10 100 1000
+do
+	echo $1-$BURST
+	java -Dburst.size=$BURST -Drtt.interval=${2:-0} -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 ".*.QueueRoundTripPercentiles.*" > Queue-Rtt-Percentiles-$1-$BURST.out
+done
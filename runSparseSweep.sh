@@ -0,0 +1,7 @@
+#/bin/sh
+for SHIFT in 0 1 2 3 4
+do
+	echo sparse-$SHIFT
+	java -Dsparse.shift=$SHIFT -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 ".*\.QueueRoundTripLatency.*" > Queue-Rtt-Sparse-$SHIFT.out
+	java -Dsparse.shift=$SHIFT -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 ".*\.QueueThroughputBusy.*" > Queue-Tpt-Sparse-$SHIFT.out
+done
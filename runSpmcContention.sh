@@ -0,0 +1,6 @@
+#/bin/sh
+for CONSUMERS in 1 2 4 8 16
+do
+	echo $CONSUMERS
+	java -XX:+UseCondCardMark -jar target/microbenchmarks.jar -f 5 -tg 1,$CONSUMERS -p queueType=11,12,52 ".*.QueueContentionThroughputBusy.*" > Queue-Spmc-$CONSUMERS.out
+done
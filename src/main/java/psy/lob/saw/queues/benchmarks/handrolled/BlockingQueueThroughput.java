@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.handrolled;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.BlockingQueue;
+
+import org.openjdk.jmh.logic.BlackHole;
+
+import psy.lob.saw.queues.common.SPSCQueueFactory;
+
+/**
+ * QueueThroughputBusy through put/take on a BlockingQueue, args are the queue id and the wait strategy
+ * (busy/yield/backoff/signal, ignored for ArrayBlockingQueue). Along with the throughput we report the CPU
+ * time each side burns per message, which is where the wait strategies differ most once the producer is
+ * slowed down with delay.p (in BlackHole.consumeCPU tokens).
+ */
+public class BlockingQueueThroughput {
+    public static final int QUEUE_SCALE = Integer.getInteger("scale", 17);
+    public static final int REPETITIONS = Integer.getInteger("reps", 10) * 1000 * 1000;
+    public static final long DELAY_PRODUCER = Long.getLong("delay.p", 0L);
+    public static final Integer TEST_VALUE = Integer.valueOf(777);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static void main(final String[] args) throws Exception {
+        System.out.println("capacity:" + (1 << QUEUE_SCALE) + " reps:" + REPETITIONS + " delay.p:" + DELAY_PRODUCER);
+        final String wait = args[1];
+        final BlockingQueue<Integer> queue = SPSCQueueFactory.createBlockingQueue(Integer.parseInt(args[0]),
+                QUEUE_SCALE, wait);
+        // the adapter's class name doesn't say which queue is behind it
+        final String qName = args[0];
+
+        final long[][] results = new long[20][];
+        for (int i = 0; i < 20; i++) {
+            System.gc();
+            results[i] = performanceRun(i, queue, qName, wait);
+        }
+        // only average last 10 results for summary
+        long ops = 0, pCpu = 0, cCpu = 0;
+        for (int i = 10; i < 20; i++) {
+            ops += results[i][0];
+            pCpu += results[i][1];
+            cCpu += results[i][2];
+        }
+        System.out.format("summary,BlockingQueueThroughput,%s,%s,%d,%d,%d\n", qName, wait,
+                ops / 10, pCpu / 10, cCpu / 10);
+    }
+
+    /**
+     * @return ops/sec, producer and consumer CPU ns per op
+     */
+    private static long[] performanceRun(int runNumber, BlockingQueue<Integer> queue, String qName, String wait)
+            throws Exception {
+        Producer p = new Producer(queue);
+        Thread thread = new Thread(p);
+        final long cpuStart = THREADS.getCurrentThreadCpuTime();
+        thread.start();// producer will timestamp start
+
+        Integer result;
+        int i = REPETITIONS;
+        do {
+            result = queue.take();
+        } while (0 != --i);
+        long end = System.nanoTime();
+        final long cCpu = THREADS.getCurrentThreadCpuTime() - cpuStart;
+
+        thread.join();
+        long duration = end - p.start;
+        long ops = (REPETITIONS * 1000L * 1000L * 1000L) / duration;
+        long pCpuPerOp = p.cpu / REPETITIONS;
+        long cCpuPerOp = cCpu / REPETITIONS;
+        System.out.format("%d - ops/sec=%,d - %s/%s result=%d cpu.p=%dns/op(%d%%) cpu.c=%dns/op(%d%%)\n",
+                runNumber, ops, qName, wait, result, pCpuPerOp, 100 * p.cpu / duration, cCpuPerOp,
+                100 * cCpu / duration);
+        return new long[] { ops, pCpuPerOp, cCpuPerOp };
+    }
+
+    public static class Producer implements Runnable {
+        private final BlockingQueue<Integer> queue;
+        long cpu;
+        volatile long start = 0;
+
+        public Producer(BlockingQueue<Integer> queue) {
+            this.queue = queue;
+        }
+
+        public void run() {
+            int i = REPETITIONS;
+            BlockingQueue<Integer> q = queue;
+            long cpuStart = THREADS.getCurrentThreadCpuTime();
+            long s = System.nanoTime();
+            try {
+                do {
+                    if (DELAY_PRODUCER != 0) {
+                        BlackHole.consumeCPU(DELAY_PRODUCER);
+                    }
+                    q.put(TEST_VALUE);
+                } while (0 != --i);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+
+            cpu = THREADS.getCurrentThreadCpuTime() - cpuStart;
+            start = s;
+        }
+    }
+}
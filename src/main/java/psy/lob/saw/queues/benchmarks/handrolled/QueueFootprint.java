@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.handrolled;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Queue;
+
+import psy.lob.saw.queues.common.SPSCQueueFactory;
+
+/**
+ * Heap used per empty queue. Allocates a few thousand queues of each of the given types and reports the
+ * heap growth per queue. Run with a fixed heap (-Xms == -Xmx) and enough of it for the fixed size queues,
+ * e.g: java -Xms4g -Xmx4g -cp ... QueueFootprint 33 42 61 62
+ */
+public class QueueFootprint {
+    public static final int QUEUE_SCALE = Integer.getInteger("scale", 17);
+    public static final int QUEUE_COUNT = Integer.getInteger("count", 1000);
+
+    public static void main(final String[] args) throws Exception {
+        System.out.println("capacity:" + (1 << QUEUE_SCALE) + " count:" + QUEUE_COUNT);
+        for (String arg : args) {
+            final int qId = Integer.parseInt(arg);
+            // first round is a warm up, loads classes etc.
+            footprint(qId);
+            final long bytes = footprint(qId);
+            final String qName = SPSCQueueFactory.createQueue(qId, QUEUE_SCALE).getClass().getSimpleName();
+            System.out.format("summary,QueueFootprint,%s,%d\n", qName, bytes);
+        }
+    }
+
+    private static long footprint(int qId) {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final Queue<?>[] queues = new Queue<?>[QUEUE_COUNT];
+        final long before = usedHeap(memory);
+        for (int i = 0; i < QUEUE_COUNT; i++) {
+            queues[i] = SPSCQueueFactory.createQueue(qId, QUEUE_SCALE);
+        }
+        final long after = usedHeap(memory);
+        // keep the queues reachable until after the measurement
+        if (queues[QUEUE_COUNT - 1].size() != 0) {
+            throw new IllegalStateException();
+        }
+        return (after - before) / QUEUE_COUNT;
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.handrolled;
+
+import java.util.Queue;
+
+import psy.lob.saw.queues.common.SPSCQueueFactory;
+import psy.lob.saw.queues.monitoring.LatencyHistogram;
+
+/**
+ * One way latency at a fixed offered rate, arg is the queue id. For each rate in rates (msgs/sec) the producer
+ * offers for duration seconds on a fixed schedule and the consumer records how long after its scheduled send
+ * time each message was polled. The schedule is kept whether or not the queue keeps up (open loop), so once
+ * the offered rate is past what the queue can take the latency climbs and the achieved rate falls short. The
+ * sweep stops at the first such saturated rate.
+ * <p>
+ * Messages are Integers from a preallocated pool, each an index into a parallel array of scheduled send
+ * times, so nothing is allocated while measuring. The pool is 2 queue capacities long: the producer can't
+ * reuse an index before the consumer is done with its previous use. This only holds for bounded queues, an
+ * unbounded queue (12, 61) more than 2 capacities behind mixes up the send times.
+ */
+public class QueueLatencyCurve {
+    public static final int QUEUE_SCALE = Integer.getInteger("scale", 17);
+    public static final long DURATION_NS = Long.getLong("duration", 5L) * 1000L * 1000L * 1000L;
+    public static final String RATES = System.getProperty("rates", "1000000,2000000,5000000,10000000,20000000,50000000");
+    // achieved rate below this fraction of the offered rate means the queue can't keep up
+    private static final double SATURATED = 0.95;
+
+    public static void main(final String[] args) throws Exception {
+        System.out.println("capacity:" + (1 << QUEUE_SCALE) + " duration:" + DURATION_NS / 1000000000L + "s rates:"
+                + RATES);
+        final Queue<Integer> queue = SPSCQueueFactory.createQueue(Integer.parseInt(args[0]), QUEUE_SCALE);
+        final String qName = queue.getClass().getSimpleName();
+        final String[] rates = RATES.split(",");
+
+        // warm up at the lowest rate, not reported
+        performanceRun(queue, Long.parseLong(rates[0].trim()));
+        System.out.println("curve,QueueLatencyCurve,queue,offered,achieved,p50,p99,p99.9,p99.99,max");
+        for (String rate : rates) {
+            System.gc();
+            final long offered = Long.parseLong(rate.trim());
+            final long[] result = performanceRun(queue, offered);
+            final long achieved = result[0];
+            System.out.format("curve,QueueLatencyCurve,%s,%d,%d,%d,%d,%d,%d,%d\n", qName, offered, achieved,
+                    result[1], result[2], result[3], result[4], result[5]);
+            if (achieved < offered * SATURATED) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return achieved msgs/sec, latency p50/p99/p99.9/p99.99/max in ns
+     */
+    private static long[] performanceRun(Queue<Integer> queue, long rate) throws Exception {
+        final long messages = rate * DURATION_NS / 1000000000L;
+        final Producer p = new Producer(queue, rate, messages);
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread thread = new Thread(p);
+        thread.start();
+
+        final long[] sendTimes = p.sendTimes;
+        long i = messages;
+        Integer e;
+        do {
+            while (null == (e = queue.poll())) {
+            }
+            histogram.record(System.nanoTime() - sendTimes[e]);
+        } while (0 != --i);
+        final long end = System.nanoTime();
+
+        thread.join();
+        final long achieved = messages * 1000000000L / (end - p.start);
+        return new long[] { achieved, histogram.valueAtPercentile(50), histogram.valueAtPercentile(99),
+                histogram.valueAtPercentile(99.9), histogram.valueAtPercentile(99.99), histogram.max() };
+    }
+
+    public static class Producer implements Runnable {
+        private final Queue<Integer> queue;
+        private final long rate;
+        private final long messages;
+        private final Integer[] pool;
+        final long[] sendTimes;
+        volatile long start = 0;
+
+        public Producer(Queue<Integer> queue, long rate, long messages) {
+            this.queue = queue;
+            this.rate = rate;
+            this.messages = messages;
+            final int length = 2 << QUEUE_SCALE;
+            pool = new Integer[length];
+            for (int i = 0; i < length; i++) {
+                pool[i] = Integer.valueOf(i);
+            }
+            sendTimes = new long[length];
+        }
+
+        public void run() {
+            final Queue<Integer> q = queue;
+            final int mask = pool.length - 1;
+            final long s = System.nanoTime();
+            start = s;
+            for (long i = 0; i < messages; i++) {
+                // scheduled times from the start, so rounding doesn't accumulate
+                final long sendTime = s + i * 1000000000L / rate;
+                while (System.nanoTime() < sendTime) {
+                }
+                final int index = (int) i & mask;
+                // published to the consumer along with the message
+                sendTimes[index] = sendTime;
+                final Integer e = pool[index];
+                while (!q.offer(e)) {
+                }
+            }
+        }
+    }
+}
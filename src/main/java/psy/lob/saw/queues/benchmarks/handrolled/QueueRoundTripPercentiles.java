@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.handrolled;
+
+import java.util.Queue;
+
+import psy.lob.saw.queues.common.SPSCQueueFactory;
+import psy.lob.saw.queues.monitoring.LatencyHistogram;
+
+/**
+ * QueueRoundTripLatency recording every burst round trip into a histogram, arg is the queue id. Reports
+ * p50/p99/p99.9/p99.99/max rather than the average.
+ * <p>
+ * By default the next burst is sent as soon as the last one is back (closed loop), so a stall delays the
+ * bursts behind it rather than being seen by them (coordinated omission). Set rtt.interval (ns) to send on a
+ * fixed schedule instead: each round trip is then timed from when it was due to be sent, so a stall is
+ * counted against every burst which should have gone out during it.
+ */
+public class QueueRoundTripPercentiles {
+    public static final int QUEUE_SCALE = Integer.getInteger("scale", 17);
+    public static final int REPETITIONS = Integer.getInteger("reps", 1000) * 1000;
+    public static final int BURST_SIZE = Integer.getInteger("burst.size", 1);
+    public static final long INTERVAL = Long.getLong("rtt.interval", 0L);
+    public static final Integer TEST_VALUE = Integer.valueOf(777);
+
+    public static void main(final String[] args) throws Exception {
+        System.out.println("capacity:" + (1 << QUEUE_SCALE) + " reps:" + REPETITIONS + " burst.size:" + BURST_SIZE
+                + " rtt.interval:" + INTERVAL);
+        if (BURST_SIZE > 1 << QUEUE_SCALE) {
+            // the ping side offers the whole burst before polling, a bounded queue would hang
+            throw new IllegalArgumentException("Burst size exceeds capacity");
+        }
+        final int qId = Integer.parseInt(args[0]);
+        final Queue<Integer> ping = SPSCQueueFactory.createQueue(qId, QUEUE_SCALE);
+        final Queue<Integer> pong = SPSCQueueFactory.createQueue(qId, QUEUE_SCALE);
+
+        final LatencyHistogram summary = new LatencyHistogram();
+        for (int i = 0; i < 20; i++) {
+            System.gc();
+            final LatencyHistogram run = performanceRun(i, ping, pong);
+            // only summarize last 10 runs
+            if (i >= 10) {
+                summary.add(run);
+            }
+        }
+        System.out.format("summary,QueueRoundTripPercentiles,%s,%d,%d,%d,%d,%d,%d,%d\n",
+                ping.getClass().getSimpleName(), BURST_SIZE, INTERVAL, summary.valueAtPercentile(50),
+                summary.valueAtPercentile(99), summary.valueAtPercentile(99.9), summary.valueAtPercentile(99.99),
+                summary.max());
+    }
+
+    private static LatencyHistogram performanceRun(int runNumber, Queue<Integer> ping, Queue<Integer> pong)
+            throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread thread = new Thread(new Pong(ping, pong));
+        thread.start();
+
+        long nextStart = System.nanoTime();
+        int i = REPETITIONS;
+        do {
+            final long start;
+            if (INTERVAL != 0) {
+                while (System.nanoTime() < nextStart) {
+                }
+                // time from when the burst was due, not from when we got round to sending it
+                start = nextStart;
+                nextStart += INTERVAL;
+            } else {
+                start = System.nanoTime();
+            }
+            for (int j = 0; j < BURST_SIZE; j++) {
+                while (!ping.offer(TEST_VALUE)) {
+                }
+            }
+            for (int j = 0; j < BURST_SIZE; j++) {
+                while (pong.poll() == null) {
+                }
+            }
+            histogram.record(System.nanoTime() - start);
+        } while (0 != --i);
+
+        thread.join();
+        System.out.format("%d - %s rtt %s\n", runNumber, ping.getClass().getSimpleName(), histogram);
+        return histogram;
+    }
+
+    public static class Pong implements Runnable {
+        private final Queue<Integer> in;
+        private final Queue<Integer> out;
+
+        public Pong(Queue<Integer> in, Queue<Integer> out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        public void run() {
+            long i = (long) REPETITIONS * BURST_SIZE;
+            Queue<Integer> inQ = in;
+            Queue<Integer> outQ = out;
+            do {
+                Integer e;
+                while (null == (e = inQ.poll())) {
+                }
+                while (!outQ.offer(e)) {
+                }
+            } while (0 != --i);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.jmh;
+
+import java.util.Arrays;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import psy.lob.saw.queues.common.FillableQueue;
+import psy.lob.saw.queues.common.SPSCQueueFactory;
+import psy.lob.saw.queues.common.Supplier;
+
+/**
+ * QueueBenchmark for the queues implementing FillableQueue, adding elements in batches of batchSize.
+ */
+@State(Scope.Benchmark)
+public abstract class FillableQueueBenchmark {
+    protected static final int QUEUE_SCALE = Integer.getInteger("scale", 17);
+    protected static final Integer ONE = 777;
+    @Param(value={"25","33","42"})
+    protected int queueType;
+    @Param(value={"1","4","16","64","256","1024"})
+    protected int batchSize;
+    protected FillableQueue<Integer> q;
+    protected Integer[] batch;
+    protected final Supplier<Integer> ones = new Supplier<Integer>() {
+        @Override
+        public Integer get() {
+            return ONE;
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void createQueue()
+    {
+        q = (FillableQueue<Integer>) SPSCQueueFactory.createQueue(queueType, QUEUE_SCALE);
+        batch = new Integer[batchSize];
+        Arrays.fill(batch, ONE);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.jmh;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.logic.Control;
+
+import psy.lob.saw.queues.offheap.MappedRecordRingBuffer;
+import psy.lob.saw.queues.offheap.MappedRecordRingBuffer.Role;
+
+/**
+ * QueueRoundTripLatency across 2 processes. The benchmark thread is the ping side, the pong side is a
+ * separate JVM started on setup (see {@link #main(String[])}) which echoes records from the ping ring to the
+ * pong ring. The rings are memory mapped files under ipc.dir (default /dev/shm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class IpcRoundTripLatency {
+    private static final long DUMMY_MESSAGE = 1;
+    private static final int RECORD_SIZE = 8;
+    private static final long PEER_TIMEOUT_MS = Long.getLong("ipc.peer.timeout", 10000L);
+    private static final String IPC_DIR = System.getProperty("ipc.dir",
+            new File("/dev/shm").isDirectory() ? "/dev/shm" : System.getProperty("java.io.tmpdir"));
+    private final static int BURST_SIZE = Integer.getInteger("burst.size",1);
+    @Param(value={"17"})
+    protected int queueScale;
+
+    private File pingFile;
+    private File pongFile;
+    private MappedRecordRingBuffer ping;
+    private MappedRecordRingBuffer pong;
+    private Process pongProcess;
+    private Thread heartbeat;
+
+    @Setup(Level.Trial)
+    public void startPong() throws Exception
+    {
+        final String prefix = "rtt-" + System.nanoTime();
+        pingFile = new File(IPC_DIR, prefix + ".ping");
+        pongFile = new File(IPC_DIR, prefix + ".pong");
+        ping = MappedRecordRingBuffer.attach(pingFile, 1 << queueScale, RECORD_SIZE, Role.PRODUCER);
+        pong = MappedRecordRingBuffer.attach(pongFile, 1 << queueScale, RECORD_SIZE, Role.CONSUMER);
+        heartbeat = startHeartbeat(ping, pong);
+
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        pongProcess = new ProcessBuilder(java, "-XX:+UseCondCardMark",
+                "-Dipc.peer.timeout=" + PEER_TIMEOUT_MS,
+                "-cp", System.getProperty("java.class.path"),
+                IpcRoundTripLatency.class.getName(),
+                pingFile.getPath(), pongFile.getPath(), Integer.toString(queueScale))
+                .inheritIO().start();
+        final long deadline = System.currentTimeMillis() + PEER_TIMEOUT_MS;
+        while (!ping.isPeerAlive(PEER_TIMEOUT_MS) || !pong.isPeerAlive(PEER_TIMEOUT_MS)) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Pong process failed to attach");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopPong() throws Exception
+    {
+        heartbeat.interrupt();
+        heartbeat.join();
+        ping.close();
+        pong.close();
+        // pong exits once it sees the ping side detached
+        pongProcess.waitFor();
+        pingFile.delete();
+        pongFile.delete();
+    }
+
+    /**
+     * We want to always start with an empty inbound.
+     */
+    @TearDown(Level.Iteration)
+    public void clear() {
+        while (pong.readClaim() != 0) {
+            pong.readCommit();
+        }
+    }
+
+    @GenerateMicroBenchmark
+    public void ping(Control ctl) {
+        final MappedRecordRingBuffer start = ping;
+        final MappedRecordRingBuffer end = pong;
+        for (int i = 0; i < BURST_SIZE; i++) {
+            long record;
+            int spins = 0;
+            while ((record = start.writeClaim()) == 0) {
+                // the ping ring is full, nothing was claimed so there is nothing to commit
+                if (ctl.stopMeasurement) {
+                    return;
+                }
+                // only check on the peer once in a while, it's not free
+                if (++spins == 1 << 20) {
+                    spins = 0;
+                    if (!start.isPeerAlive(PEER_TIMEOUT_MS)) {
+                        throw new IllegalStateException("Pong process stopped consuming");
+                    }
+                }
+            }
+            UNSAFE.putLong(record, DUMMY_MESSAGE);
+            start.writeCommit();
+        }
+        for (int i = 0; i < BURST_SIZE; i++) {
+            long record;
+            while ((record = end.readClaim()) == 0 && !ctl.stopMeasurement) {
+            }
+            // only commit what was claimed, the rest is cleared at the end of the iteration
+            if (record == 0) {
+                break;
+            }
+            end.readCommit();
+        }
+    }
+
+    private static Thread startHeartbeat(final MappedRecordRingBuffer... rings) {
+        final Thread heartbeat = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!isInterrupted()) {
+                        for (MappedRecordRingBuffer ring : rings) {
+                            ring.heartbeat();
+                        }
+                        Thread.sleep(100);
+                    }
+                } catch (InterruptedException e) {
+                    // done
+                }
+            }
+        };
+        heartbeat.setDaemon(true);
+        heartbeat.start();
+        return heartbeat;
+    }
+
+    /**
+     * The pong side: args are the ping file, pong file and queue scale.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final int capacity = 1 << Integer.parseInt(args[2]);
+        final MappedRecordRingBuffer in = MappedRecordRingBuffer.attach(new File(args[0]), capacity, RECORD_SIZE,
+                Role.CONSUMER);
+        final MappedRecordRingBuffer out = MappedRecordRingBuffer.attach(new File(args[1]), capacity, RECORD_SIZE,
+                Role.PRODUCER);
+        final Thread heartbeat = startHeartbeat(in, out);
+        int idle = 0;
+        while (true) {
+            final long inRecord = in.readClaim();
+            if (inRecord == 0) {
+                // only check on the peer once in a while, it's not free
+                if (++idle == 1 << 20) {
+                    idle = 0;
+                    if (!in.isPeerAlive(PEER_TIMEOUT_MS)) {
+                        break;
+                    }
+                }
+                continue;
+            }
+            idle = 0;
+            long outRecord;
+            while ((outRecord = out.writeClaim()) == 0) {
+                if (!out.isPeerAlive(PEER_TIMEOUT_MS)) {
+                    break;
+                }
+            }
+            if (outRecord == 0) {
+                break;
+            }
+            UNSAFE.putLong(outRecord, UNSAFE.getLong(inRecord));
+            in.readCommit();
+            out.writeCommit();
+        }
+        heartbeat.interrupt();
+        in.close();
+        out.close();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.jmh;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import psy.lob.saw.queues.offheap.OffHeapRecordRingBuffer;
+import psy.lob.saw.queues.thompson.ThompsonQueue3;
+
+/**
+ * Fixed size records through the off heap ring vs. the same records allocated on heap and passed through a
+ * ThompsonQueue3. The first long of each record is written and read back.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 3, timeUnit = TimeUnit.SECONDS)
+public class OffHeapThroughputBusy {
+    private static final int QUEUE_SCALE = Integer.getInteger("scale", 17);
+    @Param(value={"8","64","256"})
+    protected int recordSize;
+    @Param(value={"false","true"})
+    protected boolean preTouch;
+    private OffHeapRecordRingBuffer ring;
+    private Queue<long[]> heap;
+
+    @Setup(Level.Trial)
+    public void createQueue()
+    {
+        ring = new OffHeapRecordRingBuffer(1 << QUEUE_SCALE, recordSize, preTouch);
+        heap = new ThompsonQueue3<long[]>(1 << QUEUE_SCALE);
+    }
+
+    @TearDown(Level.Trial)
+    public void releaseQueue()
+    {
+        ring.close();
+    }
+
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class OpCounters {
+        public int pollFail, offerFail;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            pollFail = offerFail = 0;
+        }
+    }
+
+    private static ThreadLocal<Object> marker = new ThreadLocal<>();
+
+    @State(Scope.Thread)
+    public static class ConsumerMarker {
+        public ConsumerMarker() {
+            marker.set(this);
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("offheap")
+    public void offerOffHeap(OpCounters counters) {
+        final long record = ring.writeClaim();
+        if (record == 0) {
+            counters.offerFail++;
+            return;
+        }
+        UNSAFE.putLong(record, 777L);
+        ring.writeCommit();
+    }
+
+    @GenerateMicroBenchmark
+    @Group("offheap")
+    public long pollOffHeap(OpCounters counters, ConsumerMarker cm) {
+        final long record = ring.readClaim();
+        if (record == 0) {
+            counters.pollFail++;
+            return 0;
+        }
+        final long value = UNSAFE.getLong(record);
+        ring.readCommit();
+        return value;
+    }
+
+    @GenerateMicroBenchmark
+    @Group("heap")
+    public void offerHeap(OpCounters counters) {
+        final long[] record = new long[recordSize >> 3];
+        record[0] = 777L;
+        if (!heap.offer(record)) {
+            counters.offerFail++;
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("heap")
+    public long pollHeap(OpCounters counters, ConsumerMarker cm) {
+        final long[] record = heap.poll();
+        if (record == null) {
+            counters.pollFail++;
+            return 0;
+        }
+        return record[0];
+    }
+
+    @TearDown(Level.Iteration)
+    public void emptyQ() {
+        if (marker.get() == null)
+            return;
+        // sadly the iteration tear down is performed from each participating thread, so we need to guess
+        // which is which (can't have concurrent access to poll).
+        while (ring.readClaim() != 0) {
+            ring.readCommit();
+        }
+        while (heap.poll() != null)
+            ;
+    }
+}
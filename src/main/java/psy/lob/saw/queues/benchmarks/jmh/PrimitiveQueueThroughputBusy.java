@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.jmh;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import psy.lob.saw.queues.common.SPSCQueueFactory;
+import psy.lob.saw.queues.primitive.IntConsumer;
+import psy.lob.saw.queues.primitive.IntQueue;
+import psy.lob.saw.queues.primitive.LongConsumer;
+import psy.lob.saw.queues.primitive.LongQueue;
+import psy.lob.saw.queues.thompson.ThompsonQueue3;
+
+/**
+ * Passing sequence numbers through the primitive queues (Lamport=25, FastFlow=42) vs. boxing them into a
+ * ThompsonQueue3. The boxed group does not depend on the queueType and is repeated for each value.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 3, timeUnit = TimeUnit.SECONDS)
+public class PrimitiveQueueThroughputBusy {
+    @Param(value={"25","42"})
+    protected int queueType;
+    @Param(value={"17"})
+    protected int queueScale;
+    private LongQueue lq;
+    private IntQueue iq;
+    private Queue<Long> boxed;
+
+    @Setup(Level.Trial)
+    public void createQueue()
+    {
+        lq = SPSCQueueFactory.createLongQueue(queueType, queueScale);
+        iq = SPSCQueueFactory.createIntQueue(queueType, queueScale);
+        boxed = new ThompsonQueue3<Long>(1 << queueScale);
+    }
+
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class OpCounters {
+        public int pollFail, offerFail;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            pollFail = offerFail = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        long sequence;
+    }
+
+    @State(Scope.Thread)
+    public static class Consumer implements LongConsumer, IntConsumer {
+        long sum;
+
+        @Override
+        public void accept(long e) {
+            sum += e;
+        }
+
+        @Override
+        public void accept(int e) {
+            sum += e;
+        }
+    }
+
+    private static ThreadLocal<Object> marker = new ThreadLocal<>();
+
+    @State(Scope.Thread)
+    public static class ConsumerMarker {
+        public ConsumerMarker() {
+            marker.set(this);
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("long")
+    public void offerLong(OpCounters counters, Producer p) {
+        if (lq.offer(p.sequence)) {
+            p.sequence++;
+        } else {
+            counters.offerFail++;
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("long")
+    public long pollLong(OpCounters counters, Consumer c, ConsumerMarker cm) {
+        if (!lq.poll(c)) {
+            counters.pollFail++;
+        }
+        return c.sum;
+    }
+
+    @GenerateMicroBenchmark
+    @Group("int")
+    public void offerInt(OpCounters counters, Producer p) {
+        if (iq.offer((int) p.sequence)) {
+            p.sequence++;
+        } else {
+            counters.offerFail++;
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("int")
+    public long pollInt(OpCounters counters, Consumer c, ConsumerMarker cm) {
+        if (!iq.poll((IntConsumer) c)) {
+            counters.pollFail++;
+        }
+        return c.sum;
+    }
+
+    @GenerateMicroBenchmark
+    @Group("boxed")
+    public void offerBoxed(OpCounters counters, Producer p) {
+        if (boxed.offer(p.sequence)) {
+            p.sequence++;
+        } else {
+            counters.offerFail++;
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("boxed")
+    public long pollBoxed(OpCounters counters, Consumer c, ConsumerMarker cm) {
+        final Long e = boxed.poll();
+        if (e == null) {
+            counters.pollFail++;
+        } else {
+            c.accept(e.longValue());
+        }
+        return c.sum;
+    }
+
+    @TearDown(Level.Iteration)
+    public void emptyQ() {
+        if (marker.get() == null)
+            return;
+        // sadly the iteration tear down is performed from each participating thread, so we need to guess
+        // which is which (can't have concurrent access to poll).
+        final Consumer c = new Consumer();
+        while (lq.poll(c))
+            ;
+        while (iq.poll((IntConsumer) c))
+            ;
+        while (boxed.poll() != null)
+            ;
+    }
+}
@@ -7,20 +7,36 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 
+import psy.lob.saw.queues.common.RelaxedQueue;
 import psy.lob.saw.queues.common.SPSCQueueFactory;
 
 @State(Scope.Benchmark)
 public abstract class QueueBenchmark {
-	@Param(value={"11","12","21","22","23","24","25","31","32","33","41","42"})
+    // wrap the queue in an InstrumentedQueue, to measure the cost of the counters
+    private static final boolean INSTRUMENTED = Boolean.getBoolean("instrumented");
+	@Param(value={"11","12","21","22","23","24","25","31","32","33","41","42","43","61","62","71","81"})
 	protected int queueType;
 	@Param(value={"17"})
 	protected int queueScale;
     protected static Queue<Integer> q;
+    // null if the queue has no relaxed operations
+    protected static RelaxedQueue<Integer> rq;
     
     @Setup(Level.Trial)
     public void createQueue()
     {
-    	q = SPSCQueueFactory.createQueue(queueType, queueScale);
+    	q = INSTRUMENTED ? SPSCQueueFactory.createInstrumentedQueue(queueType, queueScale)
+    			: SPSCQueueFactory.createQueue(queueType, queueScale);
+    	rq = q instanceof RelaxedQueue ? (RelaxedQueue<Integer>) q : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void printCounts()
+    {
+    	if (INSTRUMENTED) {
+    		System.out.println(q);
+    	}
     }
 }
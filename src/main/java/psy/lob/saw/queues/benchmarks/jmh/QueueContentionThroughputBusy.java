@@ -0,0 +1,118 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.jmh;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.logic.BlackHole;
+
+import psy.lob.saw.queues.common.SPSCQueueFactory;
+
+/**
+ * Producers and consumers contending on one queue. The thread counts are set from the command line using
+ * thread groups (offer comes before poll), e.g. for 4 producers and 1 consumer: <code>-tg 4,1</code>. The
+ * queue types must fit the groups, MPSC (51) only takes 1 consumer and SPMC (52) only 1 producer, so the
+ * sweeps pick them with -p queueType. See runMpscContention.sh for 1-16 producers, runSpmcContention.sh
+ * for 1-16 consumers and runMpmcContention.sh for the NxM sweep.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 3, timeUnit = TimeUnit.SECONDS)
+public class QueueContentionThroughputBusy {
+    private static final long DELAY_PRODUCER = Long.getLong("delay.p", 0L);
+    private static final long DELAY_CONSUMER = Long.getLong("delay.c", 0L);
+    private static final Integer ONE = 777;
+    @Param(value={"11","12","51","52","53"})
+    protected int queueType;
+    @Param(value={"17"})
+    protected int queueScale;
+    protected static Queue<Integer> q;
+
+    @Setup(Level.Trial)
+    public void createQueue()
+    {
+        q = SPSCQueueFactory.createQueue(queueType, queueScale);
+    }
+
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class OpCounters {
+        public int pollFail, offerFail;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            pollFail = offerFail = 0;
+        }
+    }
+
+    private static ThreadLocal<Object> marker = new ThreadLocal<>();
+
+    @State(Scope.Thread)
+    public static class ConsumerMarker {
+        public ConsumerMarker() {
+            marker.set(this);
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("tpt")
+    @GroupThreads(1)
+    public void offer(OpCounters counters) {
+        if (!q.offer(ONE)) {
+            counters.offerFail++;
+        }
+        if (DELAY_PRODUCER != 0) {
+            BlackHole.consumeCPU(DELAY_PRODUCER);
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("tpt")
+    @GroupThreads(1)
+    public void poll(OpCounters counters, ConsumerMarker cm) {
+        if (q.poll() == null) {
+            counters.pollFail++;
+        }
+        if (DELAY_CONSUMER != 0) {
+            BlackHole.consumeCPU(DELAY_CONSUMER);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void emptyQ() {
+        if (marker.get() == null)
+            return;
+        // only consumer threads are marked, producers leave the draining to them
+        while (q.poll() != null)
+            ;
+    }
+}
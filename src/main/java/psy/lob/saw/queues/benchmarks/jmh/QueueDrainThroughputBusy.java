@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.SPSCQueueFactory;
+
+/**
+ * The consumer takes up to batchSize elements per call, either with a single drain or with a loop of polls
+ * which stops on the first null. The consumed counter is the per element throughput, the primary result is
+ * per call.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 3, timeUnit = TimeUnit.SECONDS)
+public class QueueDrainThroughputBusy {
+    private static final Integer ONE = 777;
+    private static final int QUEUE_SCALE = Integer.getInteger("scale", 17);
+    @Param(value={"21","22","23","24","25","31","32","33","41","42","61","62"})
+    protected int queueType;
+    @Param(value={"1","4","16","64","256","1024"})
+    protected int batchSize;
+    private DrainableQueue<Integer> q;
+
+    @Setup(Level.Trial)
+    public void createQueue()
+    {
+        q = (DrainableQueue<Integer>) SPSCQueueFactory.createQueue(queueType, QUEUE_SCALE);
+    }
+
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class OpCounters {
+        public int pollFail, offerFail, consumed;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            pollFail = offerFail = consumed = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Sink implements Consumer<Integer> {
+        int sum;
+
+        @Override
+        public void accept(Integer e) {
+            sum += e.intValue();
+        }
+    }
+
+    private static ThreadLocal<Object> marker = new ThreadLocal<>();
+
+    @State(Scope.Thread)
+    public static class ConsumerMarker {
+        public ConsumerMarker() {
+            marker.set(this);
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("drain")
+    public void offerDrain(OpCounters counters) {
+        if (!q.offer(ONE)) {
+            counters.offerFail++;
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("drain")
+    public int drain(OpCounters counters, Sink s, ConsumerMarker cm) {
+        final int n = q.drain(s, batchSize);
+        if (n == 0) {
+            counters.pollFail++;
+        }
+        counters.consumed += n;
+        return s.sum;
+    }
+
+    @GenerateMicroBenchmark
+    @Group("poll")
+    public void offerPoll(OpCounters counters) {
+        if (!q.offer(ONE)) {
+            counters.offerFail++;
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("poll")
+    public int poll(OpCounters counters, Sink s, ConsumerMarker cm) {
+        final DrainableQueue<Integer> lq = q;
+        int n = 0;
+        Integer e;
+        while (n < batchSize && (e = lq.poll()) != null) {
+            s.accept(e);
+            n++;
+        }
+        if (n == 0) {
+            counters.pollFail++;
+        }
+        counters.consumed += n;
+        return s.sum;
+    }
+
+    @TearDown(Level.Iteration)
+    public void emptyQ() {
+        if (marker.get() == null)
+            return;
+        // sadly the iteration tear down is performed from each participating thread, so we need to guess
+        // which is which (can't have concurrent access to poll).
+        while (q.poll() != null)
+            ;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import psy.lob.saw.queues.common.FillableQueue;
+
+/**
+ * The producer adds up to batchSize elements per call, with a loop of offers which stops on the first
+ * failure, a fill or an array offer. The consumer polls. The produced counter is the per element
+ * throughput, the primary result is per call.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 3, timeUnit = TimeUnit.SECONDS)
+public class QueueFillThroughputBusy extends FillableQueueBenchmark {
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class OpCounters {
+        public int pollFail, offerFail, produced;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            pollFail = offerFail = produced = 0;
+        }
+    }
+
+    private static ThreadLocal<Object> marker = new ThreadLocal<>();
+
+    @State(Scope.Thread)
+    public static class ConsumerMarker {
+        public ConsumerMarker() {
+            marker.set(this);
+        }
+    }
+
+    private void produced(OpCounters counters, int n) {
+        if (n == 0) {
+            counters.offerFail++;
+        }
+        counters.produced += n;
+    }
+
+    private void poll(OpCounters counters) {
+        if (q.poll() == null) {
+            counters.pollFail++;
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("offer")
+    public void offer(OpCounters counters) {
+        final FillableQueue<Integer> lq = q;
+        int n = 0;
+        while (n < batchSize && lq.offer(ONE)) {
+            n++;
+        }
+        produced(counters, n);
+    }
+
+    @GenerateMicroBenchmark
+    @Group("offer")
+    public void pollOffer(OpCounters counters, ConsumerMarker cm) {
+        poll(counters);
+    }
+
+    @GenerateMicroBenchmark
+    @Group("fill")
+    public void fill(OpCounters counters) {
+        produced(counters, q.fill(ones, batchSize));
+    }
+
+    @GenerateMicroBenchmark
+    @Group("fill")
+    public void pollFill(OpCounters counters, ConsumerMarker cm) {
+        poll(counters);
+    }
+
+    @GenerateMicroBenchmark
+    @Group("array")
+    public void offerArray(OpCounters counters) {
+        produced(counters, q.offer(batch, 0, batchSize));
+    }
+
+    @GenerateMicroBenchmark
+    @Group("array")
+    public void pollArray(OpCounters counters, ConsumerMarker cm) {
+        poll(counters);
+    }
+
+    @TearDown(Level.Iteration)
+    public void emptyQ() {
+        if (marker.get() == null)
+            return;
+        // sadly the iteration tear down is performed from each participating thread, so we need to guess
+        // which is which (can't have concurrent access to poll).
+        while (q.poll() != null)
+            ;
+    }
+}
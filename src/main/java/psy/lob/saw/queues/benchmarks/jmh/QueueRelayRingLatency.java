@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.jmh;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import psy.lob.saw.queues.common.SPSCQueueFactory;
+import psy.lob.saw.queues.monitoring.LatencyHistogram;
+
+/**
+ * QueueRoundTripLatency over a ring of N queues and N threads: the benchmark thread sends a burst into the
+ * first queue and waits for it to come back out of the last, N - 1 relay threads started on setup pass it along
+ * in between. The score is the time for a burst to go round all N hops.
+ * <p>
+ * Each element is the index of a send time slot per stage. Whoever offers it into a queue stamps the slot for
+ * that queue, whoever polls it out records the difference into that stage's histogram, so each hop is timed
+ * by its own consumer. The ring and per hop percentiles are printed at the end of each iteration. The stamps
+ * add a nanoTime call per hop to the score. Burst size is set with burst.size, runRelayRing.sh covers 1-1000.
+ * <p>
+ * Every burst is waited for, so the ring is empty between iterations, which is when the histograms are read
+ * and reset. Each relay busy spins on its own
+ * thread, the stages need as many free cores to be meaningful.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class QueueRelayRingLatency {
+    @Param(value={"11","12","21","22","23","24","25","31","32","33","41","42","43","61","62","71","81"})
+    protected int queueType;
+    @Param(value={"2","4","6"})
+    protected int stages;
+    private final static int QUEUE_SCALE = Integer.getInteger("scale", 17);
+    private final static int BURST_SIZE = Integer.getInteger("burst.size", 1);
+
+    private Queue<Integer> start;
+    private Queue<Integer> end;
+    private Relay[] relays;
+    private Integer[] messages;
+    private long[] startStamps;
+    private long[] endStamps;
+    private LatencyHistogram[] hops;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Setup(Level.Trial)
+    public void startRelays()
+    {
+        if (BURST_SIZE > 1 << QUEUE_SCALE) {
+            throw new IllegalArgumentException("Burst size exceeds capacity");
+        }
+        messages = new Integer[BURST_SIZE];
+        for (int i = 0; i < BURST_SIZE; i++) {
+            messages[i] = Integer.valueOf(i);
+        }
+        final Queue<Integer>[] queues = createQueues();
+        final long[][] stamps = new long[stages][BURST_SIZE];
+        hops = new LatencyHistogram[stages];
+        for (int i = 0; i < stages; i++) {
+            hops[i] = new LatencyHistogram();
+        }
+        start = queues[0];
+        end = queues[stages - 1];
+        startStamps = stamps[0];
+        endStamps = stamps[stages - 1];
+        relays = new Relay[stages - 1];
+        for (int i = 0; i < relays.length; i++) {
+            relays[i] = new Relay(i, queues[i], queues[i + 1], stamps[i], stamps[i + 1], hops[i]);
+            relays[i].start();
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Queue<Integer>[] createQueues() {
+        final Queue<Integer>[] queues = new Queue[stages];
+        for (int i = 0; i < stages; i++) {
+            queues[i] = SPSCQueueFactory.createQueue(queueType, QUEUE_SCALE);
+        }
+        return queues;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopRelays() throws InterruptedException
+    {
+        for (Relay relay : relays) {
+            relay.running = false;
+        }
+        for (Relay relay : relays) {
+            relay.join();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.println("ring rtt " + histogram);
+        histogram.reset();
+        for (int i = 0; i < stages; i++) {
+            System.out.println("hop " + i + " " + hops[i]);
+            hops[i].reset();
+        }
+    }
+
+    @GenerateMicroBenchmark
+    public void ring() {
+        final Queue<Integer> s = start;
+        final Queue<Integer> e = end;
+        final Integer[] m = messages;
+        final long[] sent = startStamps;
+        final long[] received = endStamps;
+        final LatencyHistogram lastHop = hops[stages - 1];
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < BURST_SIZE; i++) {
+            sent[i] = System.nanoTime();
+            while (!s.offer(m[i])) {
+            }
+        }
+        for (int i = 0; i < BURST_SIZE; i++) {
+            Integer message;
+            while ((message = e.poll()) == null) {
+            }
+            lastHop.record(System.nanoTime() - received[message.intValue()]);
+        }
+        histogram.record(System.nanoTime() - startTime);
+    }
+
+    static final class Relay extends Thread {
+        private final Queue<Integer> in;
+        private final Queue<Integer> out;
+        private final long[] inStamps;
+        private final long[] outStamps;
+        private final LatencyHistogram hop;
+        volatile boolean running = true;
+
+        Relay(int stage, Queue<Integer> in, Queue<Integer> out, long[] inStamps, long[] outStamps,
+                LatencyHistogram hop) {
+            this.in = in;
+            this.out = out;
+            this.inStamps = inStamps;
+            this.outStamps = outStamps;
+            this.hop = hop;
+            setDaemon(true);
+            setName("relay-" + stage);
+        }
+
+        @Override
+        public void run() {
+            final Queue<Integer> inQ = in;
+            final Queue<Integer> outQ = out;
+            final long[] sent = inStamps;
+            final long[] forwarded = outStamps;
+            final LatencyHistogram h = hop;
+            while (running) {
+                final Integer e = inQ.poll();
+                if (e != null) {
+                    final int i = e.intValue();
+                    final long now = System.nanoTime();
+                    h.record(now - sent[i]);
+                    forwarded[i] = now;
+                    while (!outQ.offer(e)) {
+                    }
+                }
+            }
+        }
+    }
+}
@@ -42,7 +42,7 @@ import psy.lob.saw.queues.common.SPSCQueueFactory;
 @Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
 public class QueueRoundTripLatency {
     private static final Integer DUMMY_MESSAGE = 1;
-	@Param(value={"11","12","21","22","23","24","25","31","32","33","41","42"})
+	@Param(value={"11","12","21","22","23","24","25","31","32","33","41","42","43","61","62","71","81"})
 	protected int queueType;
 	@Param(value={"17"})
 	protected int queueScale;
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.jmh;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.logic.Control;
+
+import psy.lob.saw.queues.common.SPSCQueueFactory;
+import psy.lob.saw.queues.monitoring.LatencyHistogram;
+
+/**
+ * QueueRoundTripLatency with every burst round trip of the measurement recorded into a histogram, the
+ * percentiles are printed at the end of each iteration. The score is still the average.
+ * <p>
+ * Set rtt.interval (ns) to send bursts on a fixed schedule rather than back to back, each round trip is then
+ * timed from when it was due to be sent to correct for coordinated omission (see the handrolled
+ * QueueRoundTripPercentiles). The score then includes the wait for the schedule and is only a sanity check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class QueueRoundTripPercentiles {
+    private static final Integer DUMMY_MESSAGE = 1;
+    @Param(value={"11","12","21","22","23","24","25","31","32","33","41","42","43","61","62","71","81"})
+    protected int queueType;
+    @Param(value={"17"})
+    protected int queueScale;
+
+    private final static int BURST_SIZE = Integer.getInteger("burst.size",1);
+    private final static long INTERVAL = Long.getLong("rtt.interval", 0L);
+
+    private static volatile Queue<Integer> ping;
+    protected static volatile Queue<Integer> pong;
+
+    @Setup(Level.Trial)
+    public void createQueue()
+    {
+        if (BURST_SIZE > 1 << queueScale) {
+            throw new IllegalArgumentException("Burst size exceeds capacity");
+        }
+        ping = SPSCQueueFactory.createQueue(queueType, queueScale);
+        pong = SPSCQueueFactory.createQueue(queueType, queueScale);
+    }
+
+    @State(Scope.Thread)
+    public static class Link {
+        final Queue<Integer> in;
+        final Queue<Integer> out;
+
+        public Link() {
+            this.in = ping;
+            this.out = pong;
+        }
+
+        public void link() {
+            Integer e = in.poll();
+            if (e != null) {
+                out.offer(e);
+            }
+        }
+
+        /**
+         * We want to always start with an empty inbound. Iteration tear downs are synchronized.
+         */
+        @TearDown(Level.Iteration)
+        public void clear() {
+            // SPSC -> consumer must clear the queue
+            in.clear();
+            ping = in;
+            pong = out;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Source {
+        final Queue<Integer> start;
+        final Queue<Integer> end;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        long nextStart;
+
+        public Source() {
+            this.end = pong;
+            this.start = ping;
+        }
+
+        public void ping(Control ctl) {
+            final long startTime;
+            if (INTERVAL != 0) {
+                if (nextStart == 0) {
+                    nextStart = System.nanoTime();
+                }
+                while (!ctl.stopMeasurement && System.nanoTime() < nextStart) {
+                }
+                // time from when the burst was due, not from when we got round to sending it
+                startTime = nextStart;
+                nextStart += INTERVAL;
+            } else {
+                startTime = System.nanoTime();
+            }
+            for (int i = 0; i < BURST_SIZE; i++) {
+                start.offer(DUMMY_MESSAGE);
+            }
+            for (int i = 0; i < BURST_SIZE; i++) {
+                while (!ctl.stopMeasurement && end.poll() == null) {
+                }
+            }
+            // only complete round trips during the measurement are recorded
+            if (ctl.startMeasurement && !ctl.stopMeasurement) {
+                histogram.record(System.nanoTime() - startTime);
+            }
+        }
+
+        /**
+         * We want to always start with an empty inbound. Iteration tear downs are synchronized.
+         */
+        @TearDown(Level.Iteration)
+        public void clear() {
+            System.out.println("rtt " + histogram);
+            histogram.reset();
+            nextStart = 0;
+            // SPSC -> consumer must clear the queue
+            end.clear();
+            ping = start;
+            pong = end;
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @Group("ring")
+    @GroupThreads(1)
+    public void ping(Control ctl, Source s) {
+        s.ping(ctl);
+    }
+
+    @GenerateMicroBenchmark
+    @Group("ring")
+    @GroupThreads(1)
+    public void loop(Link l) {
+        l.link();
+    }
+}
@@ -13,6 +13,8 @@
  */
 package psy.lob.saw.queues.benchmarks.jmh;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.concurrent.TimeUnit;
 
 import org.openjdk.jmh.annotations.AuxCounters;
@@ -30,6 +32,27 @@ import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.logic.BlackHole;
 
+import psy.lob.saw.queues.blocking.WaitStrategy;
+import psy.lob.saw.queues.common.RelaxedQueue;
+import psy.lob.saw.queues.common.SPSCQueueFactory;
+
+/**
+ * Producer and consumer spinning on offer/poll. Slow either side down with delay.p/delay.c (in
+ * BlackHole.consumeCPU tokens).
+ * <p>
+ * With -Dwait=busy|yield|backoff (see {@link SPSCQueueFactory#createWaitStrategy(String)}) a failed offer/poll
+ * waits with that strategy and is not delayed, and the CPU time each side burns is measured with ThreadMXBean.
+ * At the end of each iteration each side prints:
+ * <ul>
+ * <li>cpu.ns/msg: thread CPU time over the messages it offered/polled
+ * <li>util: thread CPU time over the wall time
+ * <li>idle: the share of the wall time spent waiting on a full/empty queue
+ * <li>idle.burn: CPU burnt while waiting in cores, 1 for a busy spin. The thread is taken to be on CPU
+ * whenever it's not waiting
+ * </ul>
+ * The signal strategy is left out, a side parked with nothing to signal it would hang the end of the
+ * iteration. BlockingQueueThroughput covers it.
+ */
 @State(Scope.Group)
 @BenchmarkMode(Mode.Throughput)
 @OutputTimeUnit(TimeUnit.MICROSECONDS)
@@ -38,16 +61,65 @@ import org.openjdk.jmh.logic.BlackHole;
 public class QueueThroughputBusy extends QueueBenchmark {
     private static final long DELAY_PRODUCER = Long.getLong("delay.p", 0L);
     private static final long DELAY_CONSUMER = Long.getLong("delay.c", 0L);
+    // null for no wait and no CPU accounting
+    private static final String WAIT = System.getProperty("wait");
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
     private static final Integer ONE = 777;
     
     @AuxCounters
     @State(Scope.Thread)
     public static class OpCounters {
         public int pollFail, offerFail;
+        final WaitStrategy waitStrategy = WAIT == null ? null : SPSCQueueFactory.createWaitStrategy(WAIT);
+        long msgs;
+        int idleCount;
+        long idleStart;
+        long idleTime;
+        long cpuStart;
+        long wallStart;
 
         @Setup(Level.Iteration)
         public void clean() {
             pollFail = offerFail = 0;
+            if (WAIT != null) {
+                msgs = idleTime = 0;
+                idleCount = 0;
+                wallStart = System.nanoTime();
+                cpuStart = THREADS.getCurrentThreadCpuTime();
+            }
+        }
+
+        void idle() {
+            if (idleCount == 0) {
+                idleStart = System.nanoTime();
+            }
+            waitStrategy.idle(++idleCount, Long.MAX_VALUE);
+        }
+
+        void done() {
+            if (idleCount != 0) {
+                idleTime += System.nanoTime() - idleStart;
+                idleCount = 0;
+                waitStrategy.idleDone();
+            }
+            msgs++;
+        }
+
+        @TearDown(Level.Iteration)
+        public void report() {
+            if (WAIT == null) {
+                return;
+            }
+            final long cpu = THREADS.getCurrentThreadCpuTime() - cpuStart;
+            final long now = System.nanoTime();
+            if (idleCount != 0) {
+                idleTime += now - idleStart;
+            }
+            final long wall = now - wallStart;
+            final double idleBurn = idleTime == 0 ? 0 : Math.max(0, cpu - (wall - idleTime)) / (double) idleTime;
+            System.out.format("%s %s cpu.ns/msg=%d util=%d%% idle=%d%% idle.burn=%.2f\n",
+                    marker.get() != null ? "consumer" : "producer", WAIT, msgs == 0 ? 0 : cpu / msgs,
+                    100 * cpu / wall, 100 * idleTime / wall, idleBurn);
         }
     }
 
@@ -65,7 +137,13 @@ public class QueueThroughputBusy extends QueueBenchmark {
     public void offer(OpCounters counters) {
         if (!q.offer(ONE)) {
             counters.offerFail++;
-        } 
+            if (WAIT != null) {
+                counters.idle();
+                return;
+            }
+        } else if (WAIT != null) {
+            counters.done();
+        }
         if (DELAY_PRODUCER != 0) {
             BlackHole.consumeCPU(DELAY_PRODUCER);
         }
@@ -76,7 +154,55 @@ public class QueueThroughputBusy extends QueueBenchmark {
     public void poll(OpCounters counters, ConsumerMarker cm) {
         if (q.poll() == null) {
             counters.pollFail++;
-        } 
+            if (WAIT != null) {
+                counters.idle();
+                return;
+            }
+        } else if (WAIT != null) {
+            counters.done();
+        }
+        if (DELAY_CONSUMER != 0) {
+            BlackHole.consumeCPU(DELAY_CONSUMER);
+        }
+    }
+
+    /**
+     * Same as offer, using relaxedOffer where the queue has it.
+     */
+    @GenerateMicroBenchmark
+    @Group("relaxed")
+    public void relaxedOffer(OpCounters counters) {
+        final RelaxedQueue<Integer> lq = rq;
+        if (!(lq != null ? lq.relaxedOffer(ONE) : q.offer(ONE))) {
+            counters.offerFail++;
+            if (WAIT != null) {
+                counters.idle();
+                return;
+            }
+        } else if (WAIT != null) {
+            counters.done();
+        }
+        if (DELAY_PRODUCER != 0) {
+            BlackHole.consumeCPU(DELAY_PRODUCER);
+        }
+    }
+
+    /**
+     * Same as poll, using relaxedPoll where the queue has it.
+     */
+    @GenerateMicroBenchmark
+    @Group("relaxed")
+    public void relaxedPoll(OpCounters counters, ConsumerMarker cm) {
+        final RelaxedQueue<Integer> lq = rq;
+        if ((lq != null ? lq.relaxedPoll() : q.poll()) == null) {
+            counters.pollFail++;
+            if (WAIT != null) {
+                counters.idle();
+                return;
+            }
+        } else if (WAIT != null) {
+            counters.done();
+        }
         if (DELAY_CONSUMER != 0) {
             BlackHole.consumeCPU(DELAY_CONSUMER);
         }
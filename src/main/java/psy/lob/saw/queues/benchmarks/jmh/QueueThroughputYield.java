@@ -30,6 +30,8 @@ import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.logic.BlackHole;
 
+import psy.lob.saw.queues.common.RelaxedQueue;
+
 @State(Scope.Group)
 @BenchmarkMode(Mode.Throughput)
 @OutputTimeUnit(TimeUnit.MICROSECONDS)
@@ -84,6 +86,38 @@ public class QueueThroughputYield  extends QueueBenchmark {
         }
     }
 
+    /**
+     * Same as offer, using relaxedOffer where the queue has it.
+     */
+    @GenerateMicroBenchmark
+    @Group("relaxed")
+    public void relaxedOffer(OpCounters counters) {
+        final RelaxedQueue<Integer> lq = rq;
+        if (!(lq != null ? lq.relaxedOffer(ONE) : q.offer(ONE))) {
+            counters.offerFail++;
+            Thread.yield();
+        }
+        if (DELAY_PRODUCER != 0) {
+            BlackHole.consumeCPU(DELAY_PRODUCER);
+        }
+    }
+
+    /**
+     * Same as poll, using relaxedPoll where the queue has it.
+     */
+    @GenerateMicroBenchmark
+    @Group("relaxed")
+    public void relaxedPoll(OpCounters counters, ConsumerMarker cm) {
+        final RelaxedQueue<Integer> lq = rq;
+        if ((lq != null ? lq.relaxedPoll() : q.poll()) == null) {
+            counters.pollFail++;
+            Thread.yield();
+        }
+        if (DELAY_CONSUMER != 0) {
+            BlackHole.consumeCPU(DELAY_CONSUMER);
+        }
+    }
+
     @TearDown(Level.Iteration)
     public void emptyQ() {
         if (marker.get() == null)
@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.benchmarks.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import psy.lob.saw.queues.common.FillableQueue;
+
+/**
+ * SingleThreadedOffer in batches of batchSize elements, using fill and the array offer.
+ */
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode({Mode.AverageTime})
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class SingleThreadedFill extends FillableQueueBenchmark
+{
+    public static final int CAPACITY = SingleThreadedOffer.CAPACITY;
+
+    @Setup(Level.Invocation)
+    public void clear()
+    {
+        q.clear();
+    }
+
+    @GenerateMicroBenchmark
+    @OperationsPerInvocation(CAPACITY)
+    public void fill()
+    {
+        final FillableQueue<Integer> lq = q;
+        for (int i = 0; i < CAPACITY; i += batchSize)
+        {
+            lq.fill(ones, batchSize);
+        }
+    }
+
+    @GenerateMicroBenchmark
+    @OperationsPerInvocation(CAPACITY)
+    public void offerArray()
+    {
+        final FillableQueue<Integer> lq = q;
+        final Integer[] lb = batch;
+        for (int i = 0; i < CAPACITY; i += batchSize)
+        {
+            lq.offer(lb, 0, batchSize);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.blocking;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spin, then yield, then park for a period doubling from minParkNanos up to maxParkNanos. Short waits are
+ * as responsive as a busy spin while long waits cost little CPU, at the cost of up to maxParkNanos latency
+ * once parked.
+ */
+public final class BackoffWait implements WaitStrategy {
+	public static final int DEFAULT_SPINS = Integer.getInteger("backoff.spins", 100);
+	public static final int DEFAULT_YIELDS = Integer.getInteger("backoff.yields", 10);
+	public static final long DEFAULT_MIN_PARK_NANOS = Long.getLong("backoff.park.min.ns", 1000L);
+	public static final long DEFAULT_MAX_PARK_NANOS = Long.getLong("backoff.park.max.ns", 1000000L);
+	private final int spins;
+	private final int yields;
+	private final long minParkNanos;
+	private final long maxParkNanos;
+
+	public BackoffWait() {
+		this(DEFAULT_SPINS, DEFAULT_YIELDS, DEFAULT_MIN_PARK_NANOS, DEFAULT_MAX_PARK_NANOS);
+	}
+
+	public BackoffWait(int spins, int yields, long minParkNanos, long maxParkNanos) {
+		this.spins = spins;
+		this.yields = spins + yields;
+		this.minParkNanos = minParkNanos;
+		this.maxParkNanos = maxParkNanos;
+	}
+
+	@Override
+	public void idle(int idleCount, long nanosLeft) {
+		if (idleCount <= spins) {
+			return;
+		}
+		if (idleCount <= yields) {
+			Thread.yield();
+			return;
+		}
+		// double the park time on every round, capped so the shift can't overflow
+		final int parks = Math.min(idleCount - yields - 1, 30);
+		final long parkNanos = Math.min(minParkNanos << parks, maxParkNanos);
+		LockSupport.parkNanos(this, Math.min(parkNanos, nanosLeft));
+	}
+
+	@Override
+	public void idleDone() {
+	}
+
+	@Override
+	public void signal() {
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.blocking;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link BlockingQueue} on top of any of the non-blocking queues, so they can be dropped in where an
+ * ArrayBlockingQueue is used. A thread which can't make progress idles on a {@link WaitStrategy}:
+ * <ul>
+ * <li>take/timed poll idle on notEmpty, which every successful offer signals.
+ * <li>put/timed offer idle on notFull, which every successful poll signals.
+ * </ul>
+ * Waits and bulk drains are reported as JFR events (see StallEvents) with the queue name and size, so a
+ * recording shows where back-pressure built up. The fast path, where no waiting is needed, records nothing.
+ * <p>
+ * The threading constraints of the underlying queue still apply, an SPSC queue takes a single producer and
+ * a single consumer whichever of the methods they use. Iteration is not supported.
+ */
+public final class BlockingQueueAdapter<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	private final String name;
+	private final Queue<E> queue;
+	private final int capacity;
+	private final WaitStrategy notEmpty;
+	private final WaitStrategy notFull;
+	private final StallEvents events = StallEvents.INSTANCE;
+
+	public BlockingQueueAdapter(Queue<E> queue, int capacity, WaitStrategy notEmpty, WaitStrategy notFull) {
+		this(queue.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(queue)), queue,
+				capacity, notEmpty, notFull);
+	}
+
+	/**
+	 * @param name identifies the queue in recorded events
+	 * @param capacity the capacity of the underlying queue, Integer.MAX_VALUE if unbounded
+	 */
+	public BlockingQueueAdapter(String name, Queue<E> queue, int capacity, WaitStrategy notEmpty,
+			WaitStrategy notFull) {
+		this.name = name;
+		this.queue = queue;
+		this.capacity = capacity;
+		this.notEmpty = notEmpty;
+		this.notFull = notFull;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (queue.offer(e)) {
+			notEmpty.signal();
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public E poll() {
+		final E e = queue.poll();
+		if (e != null) {
+			notFull.signal();
+		}
+		return e;
+	}
+
+	@Override
+	public E peek() {
+		return queue.peek();
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		if (offer(e)) {
+			return;
+		}
+		final Object stall = events.begin(StallEvents.FULL_STALL);
+		int idleCount = 0;
+		try {
+			do {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				notFull.idle(++idleCount, Long.MAX_VALUE);
+			} while (!offer(e));
+		} finally {
+			notFull.idleDone();
+			events.end(stall, name, queue.size(), capacity, 0, false);
+		}
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		if (offer(e)) {
+			return true;
+		}
+		final Object stall = events.begin(StallEvents.FULL_STALL);
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int idleCount = 0;
+		boolean timedOut = false;
+		try {
+			do {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				final long nanosLeft = deadline - System.nanoTime();
+				if (nanosLeft <= 0) {
+					timedOut = true;
+					return false;
+				}
+				notFull.idle(++idleCount, nanosLeft);
+			} while (!offer(e));
+			return true;
+		} finally {
+			notFull.idleDone();
+			events.end(stall, name, queue.size(), capacity, 0, timedOut);
+		}
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		E e = poll();
+		if (e != null) {
+			return e;
+		}
+		final Object stall = events.begin(StallEvents.EMPTY_STALL);
+		int idleCount = 0;
+		try {
+			do {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				notEmpty.idle(++idleCount, Long.MAX_VALUE);
+			} while ((e = poll()) == null);
+			return e;
+		} finally {
+			notEmpty.idleDone();
+			events.end(stall, name, queue.size(), capacity, 0, false);
+		}
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E e = poll();
+		if (e != null) {
+			return e;
+		}
+		final Object stall = events.begin(StallEvents.EMPTY_STALL);
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int idleCount = 0;
+		boolean timedOut = false;
+		try {
+			do {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				final long nanosLeft = deadline - System.nanoTime();
+				if (nanosLeft <= 0) {
+					timedOut = true;
+					return null;
+				}
+				notEmpty.idle(++idleCount, nanosLeft);
+			} while ((e = poll()) == null);
+			return e;
+		} finally {
+			notEmpty.idleDone();
+			events.end(stall, name, queue.size(), capacity, 0, timedOut);
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		if (capacity == Integer.MAX_VALUE) {
+			return Integer.MAX_VALUE;
+		}
+		return Math.max(0, capacity - queue.size());
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+		final Object burst = events.begin(StallEvents.BURST_DRAINED);
+		int n = 0;
+		E e;
+		while (n < maxElements && (e = queue.poll()) != null) {
+			c.add(e);
+			n++;
+		}
+		if (n > 0) {
+			notFull.signal();
+		}
+		events.end(burst, name, queue.size(), capacity, n, false);
+		return n;
+	}
+
+	@Override
+	public int size() {
+		return queue.size();
+	}
+
+	public String name() {
+		return name;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.blocking;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR events for {@link StallEvents}. The stall thresholds can be changed in the recording settings, e.g.
+ * psy.lob.saw.queues.QueueFullStall#threshold=1 ms.
+ */
+final class JfrStallEvents extends StallEvents {
+	static final int BURST_THRESHOLD = Integer.getInteger("jfr.burst.threshold", 64);
+
+	@Name("psy.lob.saw.queues.QueueFullStall")
+	@Label("Queue Full Stall")
+	@Description("A producer waited for room in a full queue")
+	@Category("Queues")
+	@Threshold("100 us")
+	@StackTrace(false)
+	static final class FullStall extends Event {
+		@Label("Queue")
+		String queue;
+		@Label("Size")
+		int size;
+		@Label("Capacity")
+		int capacity;
+		@Label("Timed Out")
+		boolean timedOut;
+	}
+
+	@Name("psy.lob.saw.queues.QueueEmptyStall")
+	@Label("Queue Empty Stall")
+	@Description("A consumer waited for an element in an empty queue")
+	@Category("Queues")
+	@Threshold("100 us")
+	@StackTrace(false)
+	static final class EmptyStall extends Event {
+		@Label("Queue")
+		String queue;
+		@Label("Size")
+		int size;
+		@Label("Capacity")
+		int capacity;
+		@Label("Timed Out")
+		boolean timedOut;
+	}
+
+	@Name("psy.lob.saw.queues.BurstDrained")
+	@Label("Burst Drained")
+	@Description("A consumer drained at least jfr.burst.threshold elements in one go")
+	@Category("Queues")
+	@Threshold("0 ns")
+	@StackTrace(false)
+	static final class BurstDrained extends Event {
+		@Label("Queue")
+		String queue;
+		@Label("Drained")
+		int count;
+		@Label("Size After")
+		int size;
+		@Label("Capacity")
+		int capacity;
+	}
+
+	private static final EventType FULL_STALL_TYPE = EventType.getEventType(FullStall.class);
+	private static final EventType EMPTY_STALL_TYPE = EventType.getEventType(EmptyStall.class);
+	private static final EventType BURST_DRAINED_TYPE = EventType.getEventType(BurstDrained.class);
+
+	@Override
+	Object begin(int type) {
+		final Event event;
+		switch (type) {
+		case FULL_STALL:
+			event = FULL_STALL_TYPE.isEnabled() ? new FullStall() : null;
+			break;
+		case EMPTY_STALL:
+			event = EMPTY_STALL_TYPE.isEnabled() ? new EmptyStall() : null;
+			break;
+		default:
+			event = BURST_DRAINED_TYPE.isEnabled() ? new BurstDrained() : null;
+			break;
+		}
+		if (event != null) {
+			event.begin();
+		}
+		return event;
+	}
+
+	@Override
+	void end(Object event, String queue, int size, int capacity, int count, boolean timedOut) {
+		if (event instanceof FullStall) {
+			final FullStall e = (FullStall) event;
+			e.queue = queue;
+			e.size = size;
+			e.capacity = capacity;
+			e.timedOut = timedOut;
+			e.commit();
+		} else if (event instanceof EmptyStall) {
+			final EmptyStall e = (EmptyStall) event;
+			e.queue = queue;
+			e.size = size;
+			e.capacity = capacity;
+			e.timedOut = timedOut;
+			e.commit();
+		} else if (event instanceof BurstDrained && count >= BURST_THRESHOLD) {
+			final BurstDrained e = (BurstDrained) event;
+			e.queue = queue;
+			e.count = count;
+			e.size = size;
+			e.capacity = capacity;
+			e.commit();
+		}
+	}
+}
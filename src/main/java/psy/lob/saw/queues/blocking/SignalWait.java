@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.blocking;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.util.concurrent.locks.LockSupport;
+
+abstract class SignalWaitPrePad {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class SignalWaitFields extends SignalWaitPrePad {
+	protected volatile Thread waiter;
+	protected volatile int fence;
+}
+
+/**
+ * Park until signalled by the other side. A waiting thread first registers itself and returns for one more
+ * attempt, so progress made before the registration is visible to the retry and progress made after it
+ * is followed by a signal.
+ * <p>
+ * Only one waiting thread is tracked, which is all the SPSC queues need. Any other waiting threads (e.g.
+ * producers on an MPSC queue) fall back on parking for up to maxParkNanos at a time.
+ * <p>
+ * The signal costs a StoreLoad barrier on every successful offer/poll, the price of never missing a waiter.
+ */
+public final class SignalWait extends SignalWaitFields implements WaitStrategy {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	public static final long DEFAULT_MAX_PARK_NANOS = Long.getLong("signal.park.max.ns", 1000000L);
+	private final static long WAITER_OFFSET;
+	static {
+		try {
+			WAITER_OFFSET = UNSAFE.objectFieldOffset(SignalWaitFields.class.getDeclaredField("waiter"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	private final long maxParkNanos;
+
+	public SignalWait() {
+		this(DEFAULT_MAX_PARK_NANOS);
+	}
+
+	public SignalWait(long maxParkNanos) {
+		this.maxParkNanos = maxParkNanos;
+	}
+
+	private Thread lvWaiter() {
+		return waiter;
+	}
+
+	private boolean casWaiter(Thread expect, Thread newValue) {
+		return UNSAFE.compareAndSwapObject(this, WAITER_OFFSET, expect, newValue);
+	}
+
+	@Override
+	public void idle(int idleCount, long nanosLeft) {
+		final Thread current = Thread.currentThread();
+		final Thread w = lvWaiter();
+		if (w == current) {
+			if (Long.MAX_VALUE == nanosLeft) {
+				LockSupport.park(this);
+			} else {
+				LockSupport.parkNanos(this, nanosLeft);
+			}
+		} else if (null == w && casWaiter(null, current)) {
+			// registered, the caller retries before we park
+		} else {
+			LockSupport.parkNanos(this, Math.min(nanosLeft, maxParkNanos));
+		}
+	}
+
+	@Override
+	public void idleDone() {
+		casWaiter(Thread.currentThread(), null);
+	}
+
+	@Override
+	public void signal() {
+		// StoreLoad: the progress we signal for must be visible before we look for a waiter, or a waiter which
+		// registered and retried just before it would be missed
+		fence = 0;
+		final Thread w = lvWaiter();
+		if (null != w) {
+			LockSupport.unpark(w);
+		}
+	}
+}
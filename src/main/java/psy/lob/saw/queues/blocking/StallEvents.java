@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.blocking;
+
+/**
+ * Where {@link BlockingQueueAdapter} reports stalls and drained bursts. Only called when a thread has to
+ * wait or drains in bulk, never per element. The JFR events are used if the JVM has JFR (jdk.jfr, JDK 8u262+
+ * or 11+) and -Djfr.events.disable is not set, otherwise nothing is recorded.
+ */
+abstract class StallEvents {
+	static final int FULL_STALL = 0;
+	static final int EMPTY_STALL = 1;
+	static final int BURST_DRAINED = 2;
+	static final StallEvents INSTANCE = create();
+
+	private static StallEvents create() {
+		if (!Boolean.getBoolean("jfr.events.disable")) {
+			try {
+				Class.forName("jdk.jfr.Event");
+				// loaded by name so the JFR classes are never touched on a JVM without them
+				return (StallEvents) Class.forName("psy.lob.saw.queues.blocking.JfrStallEvents").getDeclaredConstructor()
+						.newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// no JFR, or JFR classes present but not supported (fails JfrStallEvents initialisation)
+			}
+		}
+		return new StallEvents() {
+			@Override
+			Object begin(int type) {
+				return null;
+			}
+
+			@Override
+			void end(Object event, String queue, int size, int capacity, int count, boolean timedOut) {
+			}
+		};
+	}
+
+	/**
+	 * @return the started event, or null if the event type is not enabled
+	 */
+	abstract Object begin(int type);
+
+	/**
+	 * Commit the event if it lasted over the threshold set for it in the recording.
+	 *
+	 * @param event as returned from begin, may be null
+	 * @param count elements drained, burst events below the jfr.burst.threshold are dropped
+	 */
+	abstract void end(Object event, String queue, int size, int capacity, int count, boolean timedOut);
+}
@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.blocking;
+
+/**
+ * How a thread waits on a {@link BlockingQueueAdapter} when its offer/poll fails. Each side of the queue has
+ * its own instance: the consumer idles on the 'not empty' strategy which the producer signals and vice versa.
+ */
+public interface WaitStrategy {
+	/**
+	 * Called after a failed attempt, before the next one.
+	 *
+	 * @param idleCount the number of failed attempts so far in this wait, starting from 1
+	 * @param nanosLeft the most this call may wait for, Long.MAX_VALUE if the wait is not timed
+	 */
+	void idle(int idleCount, long nanosLeft);
+
+	/**
+	 * Called once the waiting thread has succeeded or given up, if it has called idle.
+	 */
+	void idleDone();
+
+	/**
+	 * Called by the other side after a successful offer/poll, which may let the waiting thread through.
+	 */
+	void signal();
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.bqueue;
+
+import java.util.Iterator;
+
+import psy.lob.saw.queues.common.CircularArrayQueue4;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+
+abstract class BQueue1L1Pad<E> extends CircularArrayQueue4<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public BQueue1L1Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class BQueue1TailField<E> extends BQueue1L1Pad<E> {
+	protected final int consumerBatch;
+	protected long consumerIndex;
+	protected long consumerBatchIndex;
+
+	public BQueue1TailField(int capacity, int consumerBatch) {
+		super(capacity);
+		// the probed slot must be less than a lap ahead, or it would alias a slot behind it
+		this.consumerBatch = Math.max(1, Math.min(consumerBatch, capacity() / 4));
+	}
+}
+
+abstract class BQueue1L3Pad<E> extends BQueue1TailField<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public BQueue1L3Pad(int capacity, int consumerBatch) {
+		super(capacity, consumerBatch);
+	}
+}
+
+abstract class BQueue1HeadField<E> extends BQueue1L3Pad<E> {
+	protected final int producerBatch;
+	protected long producerIndex;
+	protected long producerBatchIndex;
+
+	public BQueue1HeadField(int capacity, int producerBatch, int consumerBatch) {
+		super(capacity, consumerBatch);
+		this.producerBatch = Math.max(1, Math.min(producerBatch, capacity() / 4));
+	}
+}
+
+/**
+ * BQueue (Wang, Zhang, Tang, Hua), FastFlowQueue2 with batching on both sides:
+ * <ul>
+ * <li>No shared indices, element null-ness signals empty/full
+ * <li>The producer probes producerBatch slots ahead. If that slot is free so are all the ones before it, if it
+ * isn't the distance is halved until a free slot is found
+ * <li>The consumer backtracks the same way, probing consumerBatch slots ahead and halving the distance until it
+ * finds a full slot. All the slots before it are full too, and are consumed without further volatile loads
+ * <li>Counters are padded
+ * <li>Unsafe array access
+ * </ul>
+ */
+public final class BQueue1<E> extends BQueue1HeadField<E> implements DrainableQueue<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	public static final int PRODUCER_BATCH = Integer.getInteger("bqueue.producer.batch", 256);
+	public static final int CONSUMER_BATCH = Integer.getInteger("bqueue.consumer.batch", 256);
+
+	public BQueue1(int capacity) {
+		this(capacity, PRODUCER_BATCH, CONSUMER_BATCH);
+	}
+
+	/**
+	 * Batch sizes are capped at capacity / 4.
+	 */
+	public BQueue1(int capacity, int producerBatch, int consumerBatch) {
+		super(capacity, producerBatch, consumerBatch);
+	}
+
+	@Override
+	public boolean offer(final E e) {
+		if (null == e) {
+			throw new NullPointerException("Null is not a valid element");
+		}
+
+		final long currentProducerIndex = producerIndex;
+		if (currentProducerIndex >= producerBatchIndex && !probeFree(currentProducerIndex)) {
+			return false;
+		}
+		soElement(calcOffset(currentProducerIndex), e); // StoreStore
+		producerIndex = currentProducerIndex + 1;
+		return true;
+	}
+
+	/**
+	 * @return true if the slot at currentProducerIndex is free, moving producerBatchIndex past the furthest free
+	 *         slot found
+	 */
+	private boolean probeFree(final long currentProducerIndex) {
+		int step = producerBatch;
+		while (null != lvElement(calcOffset(currentProducerIndex + step - 1))) { // LoadLoad
+			if (step == 1) {
+				return false;
+			}
+			step >>= 1;
+		}
+		producerBatchIndex = currentProducerIndex + step;
+		return true;
+	}
+
+	/**
+	 * @return true if the slot at currentConsumerIndex is full, moving consumerBatchIndex past the furthest full
+	 *         slot found
+	 */
+	private boolean backtrack(final long currentConsumerIndex) {
+		int step = consumerBatch;
+		while (null == lvElement(calcOffset(currentConsumerIndex + step - 1))) { // LoadLoad
+			if (step == 1) {
+				return false;
+			}
+			step >>= 1;
+		}
+		consumerBatchIndex = currentConsumerIndex + step;
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		final long currentConsumerIndex = consumerIndex;
+		if (currentConsumerIndex >= consumerBatchIndex && !backtrack(currentConsumerIndex)) {
+			return null;
+		}
+		// the load of the furthest slot in the batch was volatile, so the rest can be plain
+		final long offset = calcOffset(currentConsumerIndex);
+		final E e = lpElement(offset);
+		soElement(offset, null); // StoreStore
+		consumerIndex = currentConsumerIndex + 1;
+		return e;
+	}
+
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		long currentConsumerIndex = consumerIndex;
+		int n = 0;
+		while (n < limit) {
+			if (currentConsumerIndex >= consumerBatchIndex && !backtrack(currentConsumerIndex)) {
+				break;
+			}
+			final long batchEnd = Math.min(consumerBatchIndex, currentConsumerIndex + limit - n);
+			for (; currentConsumerIndex < batchEnd; currentConsumerIndex++) {
+				final long offset = calcOffset(currentConsumerIndex);
+				final E e = lpElement(offset);
+				soElement(offset, null); // StoreStore
+				consumerIndex = currentConsumerIndex + 1;
+				c.accept(e);
+				n++;
+			}
+		}
+		return n;
+	}
+
+	@Override
+	public E peek() {
+		return lvElement(calcOffset(consumerIndex));
+	}
+
+	@Override
+	public int size() {
+		// This won't work very well :(
+		return (int) (producerIndex - consumerIndex);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		throw new UnsupportedOperationException();
+	}
+}
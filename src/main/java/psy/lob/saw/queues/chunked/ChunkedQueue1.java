@@ -0,0 +1,347 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.chunked;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.Pow2;
+import psy.lob.saw.queues.common.QueueIndices;
+import psy.lob.saw.queues.common.UnsafeAccess;
+import psy.lob.saw.queues.thompson.ThompsonQueue3;
+
+/**
+ * A fixed size array linked to the next chunk. Elements are accessed by Unsafe offset, as calculated by the
+ * owning queue.
+ */
+final class Chunk<E> {
+	private final static long NEXT_OFFSET;
+	static {
+		try {
+			NEXT_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(Chunk.class.getDeclaredField("next"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	final E[] buffer;
+	private volatile Chunk<E> next;
+
+	@SuppressWarnings("unchecked")
+	Chunk(int size) {
+		buffer = (E[]) new Object[size];
+	}
+
+	void soNext(Chunk<E> chunk) {
+		UNSAFE.putOrderedObject(this, NEXT_OFFSET, chunk);
+	}
+
+	Chunk<E> lvNext() {
+		return next;
+	}
+
+	void spElement(final long offset, final E e) {
+		UNSAFE.putObject(buffer, offset, e);
+	}
+
+	@SuppressWarnings("unchecked")
+	E lpElement(final long offset) {
+		return (E) UNSAFE.getObject(buffer, offset);
+	}
+}
+
+abstract class ChunkedQueue1PrePad<E> extends AbstractQueue<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class ChunkedQueue1Config<E> extends ChunkedQueue1PrePad<E> {
+	protected final int chunkSize;
+	protected final long chunkMask;
+	protected final ThompsonQueue3<Chunk<E>> chunkPool;
+
+	public ChunkedQueue1Config(int chunkSize, int poolSize) {
+		this.chunkSize = Pow2.findNextPositivePowerOfTwo(chunkSize);
+		chunkMask = this.chunkSize - 1;
+		chunkPool = new ThompsonQueue3<Chunk<E>>(poolSize);
+	}
+}
+
+abstract class ChunkedQueue1L1Pad<E> extends ChunkedQueue1Config<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public ChunkedQueue1L1Pad(int chunkSize, int poolSize) {
+		super(chunkSize, poolSize);
+	}
+}
+
+abstract class ChunkedQueue1ConsumerIndex<E> extends ChunkedQueue1L1Pad<E> {
+	protected volatile long consumerIndex;
+
+	public ChunkedQueue1ConsumerIndex(int chunkSize, int poolSize) {
+		super(chunkSize, poolSize);
+	}
+}
+
+abstract class ChunkedQueue1L2Pad<E> extends ChunkedQueue1ConsumerIndex<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+
+	public ChunkedQueue1L2Pad(int chunkSize, int poolSize) {
+		super(chunkSize, poolSize);
+	}
+}
+
+abstract class ChunkedQueue1HeadCache<E> extends ChunkedQueue1L2Pad<E> {
+	protected long producerIndexCache;
+	protected long consumerChunkIndex;
+	protected Chunk<E> consumerChunk;
+
+	public ChunkedQueue1HeadCache(int chunkSize, int poolSize) {
+		super(chunkSize, poolSize);
+	}
+}
+
+abstract class ChunkedQueue1L3Pad<E> extends ChunkedQueue1HeadCache<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public ChunkedQueue1L3Pad(int chunkSize, int poolSize) {
+		super(chunkSize, poolSize);
+	}
+}
+
+abstract class ChunkedQueue1ProducerIndex<E> extends ChunkedQueue1L3Pad<E> {
+	protected volatile long producerIndex;
+
+	public ChunkedQueue1ProducerIndex(int chunkSize, int poolSize) {
+		super(chunkSize, poolSize);
+	}
+}
+
+abstract class ChunkedQueue1L4Pad<E> extends ChunkedQueue1ProducerIndex<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+
+	public ChunkedQueue1L4Pad(int chunkSize, int poolSize) {
+		super(chunkSize, poolSize);
+	}
+}
+
+abstract class ChunkedQueue1TailChunk<E> extends ChunkedQueue1L4Pad<E> {
+	protected Chunk<E> producerChunk;
+
+	public ChunkedQueue1TailChunk(int chunkSize, int poolSize) {
+		super(chunkSize, poolSize);
+	}
+}
+
+/**
+ * <ul>
+ * <li>Unbounded, offer never fails
+ * <li>Elements are written into fixed size chunks, linked as the producer needs more room
+ * <li>Use ThompsonQueue3 index cache and padded inline counters across the chunks
+ * <li>Drained chunks are handed back to the producer through a small SPSC pool
+ * <li>Unsafe array access
+ * </ul>
+ */
+public final class ChunkedQueue1<E> extends ChunkedQueue1TailChunk<E> implements DrainableQueue<E>, QueueIndices {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	public static final int DEFAULT_CHUNK_SIZE = Integer.getInteger("chunk.size", 1024);
+	public static final int DEFAULT_POOL_SIZE = Integer.getInteger("chunk.pool.size", 8);
+	private static final long ARRAY_BASE;
+	private static final int ELEMENT_SHIFT;
+	private final static long CONSUMER_INDEX_OFFSET;
+	private final static long PRODUCER_INDEX_OFFSET;
+	static {
+		final int scale = UnsafeAccess.UNSAFE.arrayIndexScale(Object[].class);
+		if (4 == scale) {
+			ELEMENT_SHIFT = 2;
+		} else if (8 == scale) {
+			ELEMENT_SHIFT = 3;
+		} else {
+			throw new IllegalStateException("Unknown pointer size");
+		}
+		ARRAY_BASE = UnsafeAccess.UNSAFE.arrayBaseOffset(Object[].class);
+		try {
+			CONSUMER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(ChunkedQueue1ConsumerIndex.class.getDeclaredField("consumerIndex"));
+			PRODUCER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(ChunkedQueue1ProducerIndex.class.getDeclaredField("producerIndex"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public ChunkedQueue1() {
+		this(DEFAULT_CHUNK_SIZE, DEFAULT_POOL_SIZE);
+	}
+
+	public ChunkedQueue1(int chunkSize, int poolSize) {
+		super(chunkSize, poolSize);
+		final Chunk<E> first = new Chunk<E>(this.chunkSize);
+		consumerChunk = first;
+		producerChunk = first;
+	}
+
+	private long lvProducerIndex() {
+		return producerIndex;
+	}
+
+	private void soProducerIndex(long index) {
+		UNSAFE.putOrderedLong(this, PRODUCER_INDEX_OFFSET, index);
+	}
+
+	private long lvConsumerIndex() {
+		return consumerIndex;
+	}
+
+	private void soConsumerIndex(long index) {
+		UNSAFE.putOrderedLong(this, CONSUMER_INDEX_OFFSET, index);
+	}
+
+	private long lpProducerIndexCache() {
+		return producerIndexCache;
+	}
+
+	private void spProducerIndexCache(long index) {
+		producerIndexCache = index;
+	}
+
+	private long calcOffset(final long index) {
+		return ARRAY_BASE + ((index & chunkMask) << ELEMENT_SHIFT);
+	}
+
+	private Chunk<E> newChunk() {
+		final Chunk<E> chunk = chunkPool.poll();
+		if (null == chunk) {
+			return new Chunk<E>(chunkSize);
+		}
+		return chunk;
+	}
+
+	private void recycleChunk(Chunk<E> chunk) {
+		// break the link so a pooled/garbage chunk doesn't keep the rest of the queue alive, if the pool is
+		// full the chunk is left to the GC
+		chunk.soNext(null);
+		chunkPool.offer(chunk);
+	}
+
+	/**
+	 * Once the consumer index has moved past the current chunk the previous chunk is drained and the consumer
+	 * can move on to the next one. Called only after the index was found to be available so the producer
+	 * has already linked the next chunk.
+	 */
+	private Chunk<E> lpConsumerChunk(final long currentConsumerIndex) {
+		Chunk<E> chunk = consumerChunk;
+		if (currentConsumerIndex - consumerChunkIndex >= chunkSize) {
+			final Chunk<E> drained = chunk;
+			chunk = drained.lvNext();
+			consumerChunk = chunk;
+			consumerChunkIndex += chunkSize;
+			recycleChunk(drained);
+		}
+		return chunk;
+	}
+
+	@Override
+	public long producerIndex() {
+		return lvProducerIndex();
+	}
+
+	@Override
+	public long consumerIndex() {
+		return lvConsumerIndex();
+	}
+
+	@Override
+	public boolean offer(final E e) {
+		if (null == e) {
+			throw new NullPointerException("Null is not a valid element");
+		}
+
+		final long currentProducerIndex = lvProducerIndex();
+		Chunk<E> chunk = producerChunk;
+		if ((currentProducerIndex & chunkMask) == 0 && currentProducerIndex != 0) {
+			final Chunk<E> next = newChunk();
+			chunk.soNext(next); // StoreStore, visible before the index moves into it
+			producerChunk = chunk = next;
+		}
+
+		chunk.spElement(calcOffset(currentProducerIndex), e);
+		soProducerIndex(currentProducerIndex + 1);
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		final long currentConsumerIndex = lvConsumerIndex();
+		if (currentConsumerIndex >= lpProducerIndexCache()) {
+			spProducerIndexCache(lvProducerIndex());
+			if (currentConsumerIndex >= lpProducerIndexCache()) {
+				return null;
+			}
+		}
+
+		final Chunk<E> chunk = lpConsumerChunk(currentConsumerIndex);
+		final long offset = calcOffset(currentConsumerIndex);
+		final E e = chunk.lpElement(offset);
+		chunk.spElement(offset, null);
+		soConsumerIndex(currentConsumerIndex + 1);
+		return e;
+	}
+
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		final long currentConsumerIndex = lvConsumerIndex();
+		if (lpProducerIndexCache() - currentConsumerIndex < limit) {
+			spProducerIndexCache(lvProducerIndex());
+		}
+		final int n = (int) Math.min(lpProducerIndexCache() - currentConsumerIndex, limit);
+		if (n <= 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			final long index = currentConsumerIndex + i;
+			final Chunk<E> chunk = lpConsumerChunk(index);
+			final long offset = calcOffset(index);
+			final E e = chunk.lpElement(offset);
+			chunk.spElement(offset, null);
+			c.accept(e);
+		}
+		soConsumerIndex(currentConsumerIndex + n);
+		return n;
+	}
+
+	@Override
+	public E peek() {
+		final long currentConsumerIndex = lvConsumerIndex();
+		if (currentConsumerIndex >= lvProducerIndex()) {
+			return null;
+		}
+		return lpConsumerChunk(currentConsumerIndex).lpElement(calcOffset(currentConsumerIndex));
+	}
+
+	@Override
+	public int size() {
+		return (int) (lvProducerIndex() - lvConsumerIndex());
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		throw new UnsupportedOperationException();
+	}
+}
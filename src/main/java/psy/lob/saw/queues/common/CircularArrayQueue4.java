@@ -10,8 +10,14 @@ abstract class CircularArrayQueue4PrePad<E> extends AbstractQueue<E> {
 }
 public abstract class CircularArrayQueue4<E> extends CircularArrayQueue4PrePad<E> {
 	private static final int BUFFER_PAD = 32;
+	/**
+	 * Elements are spread 1 << SPARSE_SHIFT slots apart so a producer and consumer working on neighbouring
+	 * elements are less likely to share a cache line, at the cost of a (1 << SPARSE_SHIFT) times larger buffer.
+	 */
+	public static final int SPARSE_SHIFT = Integer.getInteger("sparse.shift", 0);
 	protected static final long ARRAY_BASE;
 	protected static final int ELEMENT_SHIFT;
+	private static final int SPARSE_ELEMENT_SHIFT;
 	static {
         final int scale = UnsafeAccess.UNSAFE.arrayIndexScale(Object[].class);
 
@@ -23,6 +29,7 @@ public abstract class CircularArrayQueue4<E> extends CircularArrayQueue4PrePad<E
             throw new IllegalStateException("Unknown pointer size");
         }
         ARRAY_BASE = UnsafeAccess.UNSAFE.arrayBaseOffset(Object[].class) + (BUFFER_PAD << ELEMENT_SHIFT);
+        SPARSE_ELEMENT_SHIFT = ELEMENT_SHIFT + SPARSE_SHIFT;
 	}
 	private final int capacity;
 	private final long mask;
@@ -32,8 +39,8 @@ public abstract class CircularArrayQueue4<E> extends CircularArrayQueue4PrePad<E
 	public CircularArrayQueue4(int capacity) {
 		this.capacity = Pow2.findNextPositivePowerOfTwo(capacity);
 		mask = capacity() - 1;
-		// padding + size + padding
-        buffer = (E[]) new Object[this.capacity + BUFFER_PAD * 2];
+		// padding + sparse size + padding
+        buffer = (E[]) new Object[(this.capacity << SPARSE_SHIFT) + BUFFER_PAD * 2];
 	}
 
 	protected final void spElement(final long offset, final E e) {
@@ -58,7 +65,8 @@ public abstract class CircularArrayQueue4<E> extends CircularArrayQueue4PrePad<E
 		// ARRAY_BASE pre-calculated: ARRAY_BASE + ((index % capacity) * (slot size)) =
 		// capacity is power of 2: ARRAY_BASE + ((index & mask) * (slot size)) =
 		// slot size is a power of 2, replace with a shift of pre-calculated ELEMENT_SHIFT
-		return ARRAY_BASE + ((index & mask) << ELEMENT_SHIFT);
+		// sparse slots are 1 << SPARSE_SHIFT slots apart: ARRAY_BASE + ((index & mask) << (ELEMENT_SHIFT + SPARSE_SHIFT))
+		return ARRAY_BASE + ((index & mask) << SPARSE_ELEMENT_SHIFT);
 	}
 
 	protected final int capacity() {
@@ -0,0 +1,5 @@
+package psy.lob.saw.queues.common;
+
+public interface Consumer<E> {
+	void accept(E e);
+}
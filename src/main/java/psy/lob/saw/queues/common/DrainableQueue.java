@@ -0,0 +1,17 @@
+package psy.lob.saw.queues.common;
+
+import java.util.Queue;
+
+/**
+ * A queue which can hand over a batch of elements to the consumer in one go, paying for the producer index
+ * read and the consumer index publish once per batch rather than once per element.
+ */
+public interface DrainableQueue<E> extends Queue<E> {
+	/**
+	 * Pass up to limit elements to the consumer, in order. Only to be called by consumers, and the
+	 * consumer must not throw as the batch may be released to the producer after it was handed over.
+	 *
+	 * @return the number of elements drained, 0 if the queue is empty
+	 */
+	int drain(Consumer<E> c, int limit);
+}
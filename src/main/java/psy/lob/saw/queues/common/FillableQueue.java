@@ -0,0 +1,27 @@
+package psy.lob.saw.queues.common;
+
+import java.util.Queue;
+
+/**
+ * A queue which the producer can add a batch of elements to in one go, checking for free space and
+ * publishing the producer index once per batch rather than once per element.
+ */
+public interface FillableQueue<E> extends Queue<E> {
+	/**
+	 * Add up to limit elements from the supplier, which is only called for as many elements as there is room
+	 * for. Only to be called by the producer.
+	 *
+	 * @return the number of elements added, 0 if the queue is full
+	 * @throws NullPointerException if the supplier returns null, the elements supplied before it are added
+	 */
+	int fill(Supplier<E> s, int limit);
+
+	/**
+	 * Add up to len elements from src, starting at src[from], for as many as there is room for. Only to be
+	 * called by the producer.
+	 *
+	 * @return the number of elements added, 0 if the queue is full
+	 * @throws NullPointerException on a null element, the elements before it are added
+	 */
+	int offer(E[] src, int from, int len);
+}
@@ -0,0 +1,18 @@
+package psy.lob.saw.queues.common;
+
+/**
+ * A queue which caches the other side's index, counting how many times each cache had to be refreshed from
+ * the shared index. Each refresh is a read of a cache line the other side writes to, so the refresh rate is
+ * the rate of coherence misses the caches didn't save. Counts may be read from any thread.
+ */
+public interface IndexCacheStats {
+	/**
+	 * @return how many times the producer re-read the consumer index
+	 */
+	long consumerIndexCacheRefreshes();
+
+	/**
+	 * @return how many times the consumer re-read the producer index
+	 */
+	long producerIndexCacheRefreshes();
+}
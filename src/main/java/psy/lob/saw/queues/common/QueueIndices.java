@@ -0,0 +1,18 @@
+package psy.lob.saw.queues.common;
+
+/**
+ * A queue whose producer/consumer indices count every element offered/polled since it was created. Both are
+ * volatile loads, so they may be read from any thread, e.g. to sample rates without touching the hot path.
+ * Queues which publish an index in batches may lag behind by up to a batch.
+ */
+public interface QueueIndices {
+	/**
+	 * @return how many elements were offered so far
+	 */
+	long producerIndex();
+
+	/**
+	 * @return how many elements were polled so far
+	 */
+	long consumerIndex();
+}
@@ -0,0 +1,23 @@
+package psy.lob.saw.queues.common;
+
+import java.util.Queue;
+
+/**
+ * Operations which decide on full/empty by the null-ness of the next slot alone, as FastFlowQueue2 does,
+ * rather than by the other side's index. They may report full/empty while the other side is between
+ * updating the slot and updating its index, and so are only suitable for callers which retry (e.g. busy
+ * spinning on the queue). In return neither side reads the other side's index or cache.
+ */
+public interface RelaxedQueue<E> extends Queue<E> {
+	/**
+	 * @return false if the next slot is not yet free
+	 */
+	boolean relaxedOffer(E e);
+
+	/**
+	 * @return null if the next slot is not yet filled
+	 */
+	E relaxedPoll();
+
+	E relaxedPeek();
+}
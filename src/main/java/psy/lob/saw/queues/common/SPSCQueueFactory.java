@@ -2,15 +2,38 @@ package psy.lob.saw.queues.common;
 
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+import psy.lob.saw.queues.blocking.BackoffWait;
+import psy.lob.saw.queues.blocking.BlockingQueueAdapter;
+import psy.lob.saw.queues.blocking.BusySpinWait;
+import psy.lob.saw.queues.blocking.SignalWait;
+import psy.lob.saw.queues.blocking.WaitStrategy;
+import psy.lob.saw.queues.blocking.YieldWait;
+import psy.lob.saw.queues.bqueue.BQueue1;
+import psy.lob.saw.queues.chunked.ChunkedQueue1;
 import psy.lob.saw.queues.ff.FastFlowQueue1;
 import psy.lob.saw.queues.ff.FastFlowQueue2;
+import psy.lob.saw.queues.growable.GrowableQueue1;
 import psy.lob.saw.queues.lamport.LamportQueue1;
 import psy.lob.saw.queues.lamport.LamportQueue2;
 import psy.lob.saw.queues.lamport.LamportQueue3;
 import psy.lob.saw.queues.lamport.LamportQueue4;
 import psy.lob.saw.queues.lamport.LamportQueue5;
+import psy.lob.saw.queues.mcring.MCRingQueue1;
+import psy.lob.saw.queues.monitoring.InstrumentedQueue;
+import psy.lob.saw.queues.monitoring.QueueRegistry;
+import psy.lob.saw.queues.monitoring.TracingQueue;
+import psy.lob.saw.queues.mpmc.MPMCQueue1;
+import psy.lob.saw.queues.mpsc.MPSCQueue1;
+import psy.lob.saw.queues.primitive.IntFastFlowQueue;
+import psy.lob.saw.queues.primitive.IntLamportQueue;
+import psy.lob.saw.queues.primitive.IntQueue;
+import psy.lob.saw.queues.primitive.LongFastFlowQueue;
+import psy.lob.saw.queues.primitive.LongLamportQueue;
+import psy.lob.saw.queues.primitive.LongQueue;
+import psy.lob.saw.queues.spmc.SPMCQueue1;
 import psy.lob.saw.queues.thompson.ThompsonQueue1;
 import psy.lob.saw.queues.thompson.ThompsonQueue2;
 import psy.lob.saw.queues.thompson.ThompsonQueue3;
@@ -44,9 +67,104 @@ public final class SPSCQueueFactory {
             return new FastFlowQueue1<Integer>(qCapacity);
         case 42:
             return new FastFlowQueue2<Integer>(qCapacity);
+        case 43:
+            return new FastFlowQueue2<Integer>(qCapacity, FastFlowQueue2.OFFER_LOOK_AHEAD, true);
+        case 51:
+            return new MPSCQueue1<Integer>(qCapacity);
+        case 52:
+            return new SPMCQueue1<Integer>(qCapacity);
+        case 53:
+            return new MPMCQueue1<Integer>(qCapacity);
+        case 61:
+            return new ChunkedQueue1<Integer>();
+        case 62:
+            return new GrowableQueue1<Integer>(qCapacity);
+        case 71:
+            return new MCRingQueue1<Integer>(qCapacity);
+        case 81:
+            return new BQueue1<Integer>(qCapacity);
         default:
             throw new IllegalArgumentException("Invalid option: " + qId);
         }
     }
 
+    /**
+     * Primitive specialisations use the id of the boxed queue they mirror.
+     */
+    public static LongQueue createLongQueue(int qId, int qScale) {
+        int qCapacity = 1 << qScale;
+        switch (qId) {
+        case 25:
+            return new LongLamportQueue(qCapacity);
+        case 42:
+            return new LongFastFlowQueue(qCapacity);
+        default:
+            throw new IllegalArgumentException("Invalid option: " + qId);
+        }
+    }
+
+    public static IntQueue createIntQueue(int qId, int qScale) {
+        int qCapacity = 1 << qScale;
+        switch (qId) {
+        case 25:
+            return new IntLamportQueue(qCapacity);
+        case 42:
+            return new IntFastFlowQueue(qCapacity);
+        default:
+            throw new IllegalArgumentException("Invalid option: " + qId);
+        }
+    }
+
+    /**
+     * Any of the queues above behind a {@link BlockingQueueAdapter}, waiting with the named strategy on
+     * both sides. ArrayBlockingQueue (11) is returned as is.
+     */
+    public static BlockingQueue<Integer> createBlockingQueue(int qId, int qScale, String wait) {
+        if (qId == 11) {
+            return new ArrayBlockingQueue<Integer>(1 << qScale);
+        }
+        return new BlockingQueueAdapter<Integer>(createQueue(qId, qScale), capacity(qId, qScale),
+                createWaitStrategy(wait), createWaitStrategy(wait));
+    }
+
+    /**
+     * Any of the queues above, registered with the registry under the given name. Nothing is added to the
+     * queue's hot path, offers/polls/rates are read from its indices when JMX asks for them. Queues without
+     * indices (FastFlow, BQueue, ABQ, CLQ) report -1 for those, register a {@link #createInstrumentedQueue}
+     * instead to have them from its counts. Unregistered when the registry is closed.
+     */
+    public static Queue<Integer> createMonitoredQueue(int qId, int qScale, String name, QueueRegistry registry) {
+        final Queue<Integer> queue = createQueue(qId, qScale);
+        registry.register(name, queue, capacity(qId, qScale));
+        return queue;
+    }
+
+    public static InstrumentedQueue<Integer> createInstrumentedQueue(int qId, int qScale) {
+        return new InstrumentedQueue<Integer>(createQueue(qId, qScale), capacity(qId, qScale));
+    }
+
+    public static TracingQueue<Integer> createTracedQueue(int qId, int qScale, int sampleRate) {
+        return new TracingQueue<Integer>(createQueue(qId, qScale), capacity(qId, qScale), sampleRate);
+    }
+
+    private static int capacity(int qId, int qScale) {
+        // CLQ and the chunked queue are unbounded
+        return qId == 12 || qId == 61 ? Integer.MAX_VALUE : 1 << qScale;
+    }
+
+    public static WaitStrategy createWaitStrategy(String wait) {
+        switch (wait) {
+        case "busy":
+            return new BusySpinWait();
+        case "yield":
+            return new YieldWait();
+        case "backoff":
+            return new BackoffWait();
+        case "signal":
+            return new SignalWait();
+        default:
+            throw new IllegalArgumentException("Invalid option: " + wait);
+        }
+    }
+
 }
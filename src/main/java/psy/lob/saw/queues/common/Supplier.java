@@ -0,0 +1,5 @@
+package psy.lob.saw.queues.common;
+
+public interface Supplier<E> {
+	E get();
+}
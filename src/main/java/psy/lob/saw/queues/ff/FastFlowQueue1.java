@@ -16,6 +16,8 @@ package psy.lob.saw.queues.ff;
 import java.util.Iterator;
 
 import psy.lob.saw.queues.common.CircularArrayQueue4;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
 
 /**
  * <ul>
@@ -60,7 +62,7 @@ abstract class FastFlowQueue1ProducerIndex<E> extends FastFlowQueue1L3Pad<E> {
 	}
 }
 
-public final class FastFlowQueue1<E> extends FastFlowQueue1ProducerIndex<E> {
+public final class FastFlowQueue1<E> extends FastFlowQueue1ProducerIndex<E> implements DrainableQueue<E> {
 	protected long p00, p01, p02, p03, p04, p05, p06, p07;
 	protected long p10, p11, p12, p13, p14, p15, p16, p17;
 	public FastFlowQueue1(int capacity) {
@@ -93,6 +95,24 @@ public final class FastFlowQueue1<E> extends FastFlowQueue1ProducerIndex<E> {
 		consumerIndex++;
 		return e;
 	}
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		// there's no consumer index to publish, each slot is handed back to the producer as it is nulled
+		int n = 0;
+		while (n < limit) {
+			final long offset = calcOffset(consumerIndex);
+			final E e = lvElement(offset); // LoadLoad
+			if (null == e) {
+				break;
+			}
+			soElement(offset, null); // StoreStore
+			consumerIndex++;
+			c.accept(e);
+			n++;
+		}
+		return n;
+	}
+
 	@Override
 	public E peek() {
 		final long offset = calcOffset(consumerIndex);
@@ -16,6 +16,10 @@ package psy.lob.saw.queues.ff;
 import java.util.Iterator;
 
 import psy.lob.saw.queues.common.CircularArrayQueue4;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.FillableQueue;
+import psy.lob.saw.queues.common.Supplier;
 
 /**
  * <ul>
@@ -53,22 +57,39 @@ abstract class FastFlowQueue2L3Pad<E> extends FastFlowQueue2TailField<E> {
 }
 
 abstract class FastFlowQueue2HeadField<E> extends FastFlowQueue2L3Pad<E> {
+	protected final int maxLookAhead;
+	protected final boolean adaptive;
+	protected int lookAhead;
 	protected long producerIndex;
 	protected long lookAheadCache;
 
-	public FastFlowQueue2HeadField(int capacity) {
+	public FastFlowQueue2HeadField(int capacity, int lookAhead, boolean adaptive) {
 		super(capacity);
+		// the probed slot must be less than a lap ahead of the producer, or it would alias a slot behind it
+		this.maxLookAhead = Math.max(1, Math.min(lookAhead, capacity() / 4));
+		this.adaptive = adaptive;
+		this.lookAhead = maxLookAhead;
 	}
-
 }
 
-public final class FastFlowQueue2<E> extends FastFlowQueue2HeadField<E> {
+public final class FastFlowQueue2<E> extends FastFlowQueue2HeadField<E> implements DrainableQueue<E>, FillableQueue<E> {
 	protected long p00, p01, p02, p03, p04, p05, p06, p07;
 	protected long p10, p11, p12, p13, p14, p15, p16, p17;
-	protected static final int OFFER_LOOK_AHEAD = Integer.getInteger("offer.batch.size", 4096);
+	public static final int OFFER_LOOK_AHEAD = Integer.getInteger("offer.batch.size", 4096);
+	public static final boolean ADAPTIVE_LOOK_AHEAD = Boolean.getBoolean("offer.batch.adaptive");
 
 	public FastFlowQueue2(int capacity) {
-		super(Math.min(capacity, OFFER_LOOK_AHEAD * 2));
+		this(capacity, OFFER_LOOK_AHEAD, ADAPTIVE_LOOK_AHEAD);
+	}
+
+	/**
+	 * @param lookAhead how far ahead of the producer offer probes for a free slot, capped at capacity / 4
+	 * @param adaptive if true a probe which finds the slot taken halves the distance and retries, down to the
+	 *            next slot, rather than fail the offer. The distance doubles back up to lookAhead on every
+	 *            probe which succeeds first time.
+	 */
+	public FastFlowQueue2(int capacity, int lookAhead, boolean adaptive) {
+		super(capacity, lookAhead, adaptive);
 	}
 
 	private void incConsumerIndex() {
@@ -81,13 +102,8 @@ public final class FastFlowQueue2<E> extends FastFlowQueue2HeadField<E> {
 			throw new NullPointerException("Null is not a valid element");
 		}
 
-		if (lookAheadCache < producerIndex) {
-			long lookAheadOffset = calcOffset(producerIndex + OFFER_LOOK_AHEAD);
-			if (null != lvElement(lookAheadOffset)) { // LoadLoad
-				return false;
-			} else {
-				lookAheadCache = producerIndex + OFFER_LOOK_AHEAD;
-			}
+		if (lookAheadCache < producerIndex && !probe()) {
+			return false;
 		}
 		final long offset = calcOffset(producerIndex);
 		soElement(offset, e); // StoreStore
@@ -95,6 +111,78 @@ public final class FastFlowQueue2<E> extends FastFlowQueue2HeadField<E> {
 		return true;
 	}
 
+	/**
+	 * Look lookAhead slots ahead of the producer, if that slot is free so are all the ones before it.
+	 *
+	 * @return true if the next slot is free, in which case lookAheadCache is moved up to the probed slot
+	 */
+	private boolean probe() {
+		final long currentProducerIndex = producerIndex;
+		int step = lookAhead;
+		while (null != lvElement(calcOffset(currentProducerIndex + step))) { // LoadLoad
+			if (!adaptive || step == 0) {
+				return false;
+			}
+			step >>= 1;
+		}
+		lookAheadCache = currentProducerIndex + step;
+		if (adaptive) {
+			// found room at the full distance, there's headroom to look further next time
+			lookAhead = step != lookAhead ? step : Math.min(step == 0 ? 1 : step << 1, maxLookAhead);
+		}
+		return true;
+	}
+
+	/**
+	 * The consumer nulls slots in order, so if the last slot of the batch is free so are all the ones before
+	 * it. If it isn't, fall back on the look ahead cache and then on a single slot check.
+	 *
+	 * @return how many of the next limit slots are free
+	 */
+	private int freeSlots(final int limit) {
+		if (limit <= 0) {
+			return 0;
+		}
+		final long lastIndex = producerIndex + Math.min(limit, capacity()) - 1;
+		if (lookAheadCache < lastIndex) {
+			if (null == lvElement(calcOffset(lastIndex))) { // LoadLoad
+				lookAheadCache = lastIndex;
+			} else if (lookAheadCache < producerIndex) {
+				return null == lvElement(calcOffset(producerIndex)) ? 1 : 0;
+			}
+		}
+		return (int) (Math.min(lookAheadCache, lastIndex) - producerIndex + 1);
+	}
+
+	@Override
+	public int fill(final Supplier<E> s, final int limit) {
+		// there's no producer index to publish, each element is published by the ordered store to its slot
+		final int n = freeSlots(limit);
+		for (int i = 0; i < n; i++) {
+			final E e = s.get();
+			if (null == e) {
+				throw new NullPointerException("Null is not a valid element");
+			}
+			soElement(calcOffset(producerIndex), e); // StoreStore
+			producerIndex++;
+		}
+		return n;
+	}
+
+	@Override
+	public int offer(final E[] src, final int from, final int len) {
+		final int n = freeSlots(len);
+		for (int i = 0; i < n; i++) {
+			final E e = src[from + i];
+			if (null == e) {
+				throw new NullPointerException("Null is not a valid element");
+			}
+			soElement(calcOffset(producerIndex), e); // StoreStore
+			producerIndex++;
+		}
+		return n;
+	}
+
 	@Override
 	public E poll() {
 		final long offset = calcOffset(consumerIndex);
@@ -107,6 +195,24 @@ public final class FastFlowQueue2<E> extends FastFlowQueue2HeadField<E> {
 		return e;
 	}
 
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		// there's no consumer index to publish, each slot is handed back to the producer as it is nulled
+		int n = 0;
+		while (n < limit) {
+			final long offset = calcOffset(consumerIndex);
+			final E e = lvElement(offset); // LoadLoad
+			if (null == e) {
+				break;
+			}
+			soElement(offset, null); // StoreStore
+			incConsumerIndex();
+			c.accept(e);
+			n++;
+		}
+		return n;
+	}
+
 	@Override
 	public E peek() {
 		final long offset = calcOffset(consumerIndex);
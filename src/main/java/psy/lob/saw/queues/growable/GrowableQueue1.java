@@ -0,0 +1,317 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.growable;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.Pow2;
+import psy.lob.saw.queues.common.QueueIndices;
+import psy.lob.saw.queues.common.UnsafeAccess;
+
+abstract class GrowableQueue1PrePad<E> extends AbstractQueue<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class GrowableQueue1ProducerFields<E> extends GrowableQueue1PrePad<E> {
+	protected final int maxCapacity;
+	protected volatile long producerIndex;
+	protected long producerLimit;
+	protected long producerMask;
+	protected E[] producerBuffer;
+
+	public GrowableQueue1ProducerFields(int maxCapacity) {
+		this.maxCapacity = Pow2.findNextPositivePowerOfTwo(maxCapacity);
+	}
+}
+
+abstract class GrowableQueue1L1Pad<E> extends GrowableQueue1ProducerFields<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public GrowableQueue1L1Pad(int maxCapacity) {
+		super(maxCapacity);
+	}
+}
+
+abstract class GrowableQueue1ConsumerFields<E> extends GrowableQueue1L1Pad<E> {
+	protected volatile long consumerIndex;
+	protected long consumerMask;
+	protected E[] consumerBuffer;
+
+	public GrowableQueue1ConsumerFields(int maxCapacity) {
+		super(maxCapacity);
+	}
+}
+
+/**
+ * <ul>
+ * <li>Starts with a small buffer and lets the producer double it, up to a maximum capacity
+ * <li>The producer links the new buffer from the last slot of the old one and leaves a JUMP marker for the
+ * consumer, neither side blocks
+ * <li>Element null-ness signals empty/full with producer look ahead, same as FastFlowQueue2
+ * <li>Padded producer/consumer fields
+ * <li>Unsafe array access
+ * </ul>
+ */
+public final class GrowableQueue1<E> extends GrowableQueue1ConsumerFields<E> implements DrainableQueue<E>, QueueIndices {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	public static final int DEFAULT_INITIAL_CAPACITY = Integer.getInteger("growable.initial.capacity", 16);
+	protected static final int OFFER_LOOK_AHEAD = Integer.getInteger("offer.batch.size", 4096);
+	private static final Object JUMP = new Object();
+	private static final long ARRAY_BASE;
+	private static final int ELEMENT_SHIFT;
+	private final static long CONSUMER_INDEX_OFFSET;
+	private final static long PRODUCER_INDEX_OFFSET;
+	static {
+		final int scale = UnsafeAccess.UNSAFE.arrayIndexScale(Object[].class);
+		if (4 == scale) {
+			ELEMENT_SHIFT = 2;
+		} else if (8 == scale) {
+			ELEMENT_SHIFT = 3;
+		} else {
+			throw new IllegalStateException("Unknown pointer size");
+		}
+		ARRAY_BASE = UnsafeAccess.UNSAFE.arrayBaseOffset(Object[].class);
+		try {
+			CONSUMER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(GrowableQueue1ConsumerFields.class.getDeclaredField("consumerIndex"));
+			PRODUCER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(GrowableQueue1ProducerFields.class.getDeclaredField("producerIndex"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public GrowableQueue1(int maxCapacity) {
+		this(Math.min(DEFAULT_INITIAL_CAPACITY, maxCapacity), maxCapacity);
+	}
+
+	public GrowableQueue1(int initialCapacity, int maxCapacity) {
+		super(maxCapacity);
+		// we need at least 2 slots, one of which may hold the JUMP marker
+		final int capacity = Math.min(Pow2.findNextPositivePowerOfTwo(Math.max(2, initialCapacity)), this.maxCapacity);
+		final E[] buffer = allocate(capacity);
+		producerBuffer = buffer;
+		producerMask = capacity - 1;
+		producerLimit = lookAheadStep(capacity) - 1;
+		consumerBuffer = buffer;
+		consumerMask = capacity - 1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> E[] allocate(int capacity) {
+		// last slot links to the next buffer
+		return (E[]) new Object[capacity + 1];
+	}
+
+	private static int lookAheadStep(int capacity) {
+		return Math.max(1, Math.min(capacity / 4, OFFER_LOOK_AHEAD));
+	}
+
+	private static long calcOffset(final long index, final long mask) {
+		return ARRAY_BASE + ((index & mask) << ELEMENT_SHIFT);
+	}
+
+	private static long nextBufferOffset(final long mask) {
+		return ARRAY_BASE + ((mask + 1) << ELEMENT_SHIFT);
+	}
+
+	private static void soElement(final Object[] buffer, final long offset, final Object e) {
+		UNSAFE.putOrderedObject(buffer, offset, e);
+	}
+
+	private static Object lvElement(final Object[] buffer, final long offset) {
+		return UNSAFE.getObjectVolatile(buffer, offset);
+	}
+
+	private long lvProducerIndex() {
+		return producerIndex;
+	}
+
+	private void soProducerIndex(long index) {
+		UNSAFE.putOrderedLong(this, PRODUCER_INDEX_OFFSET, index);
+	}
+
+	private long lvConsumerIndex() {
+		return consumerIndex;
+	}
+
+	private void soConsumerIndex(long index) {
+		UNSAFE.putOrderedLong(this, CONSUMER_INDEX_OFFSET, index);
+	}
+
+	@Override
+	public long producerIndex() {
+		return lvProducerIndex();
+	}
+
+	@Override
+	public long consumerIndex() {
+		return lvConsumerIndex();
+	}
+
+	@Override
+	public boolean offer(final E e) {
+		if (null == e) {
+			throw new NullPointerException("Null is not a valid element");
+		}
+
+		final E[] buffer = producerBuffer;
+		final long index = producerIndex;
+		final long mask = producerMask;
+		final long offset = calcOffset(index, mask);
+		if (index < producerLimit) {
+			writeToQueue(buffer, e, index, offset);
+			return true;
+		}
+		return offerSlowPath(buffer, e, index, mask, offset);
+	}
+
+	private boolean offerSlowPath(final E[] buffer, final E e, final long index, final long mask, final long offset) {
+		final int capacity = (int) (mask + 1);
+		final int lookAheadStep = lookAheadStep(capacity);
+		if (null == lvElement(buffer, calcOffset(index + lookAheadStep, mask))) { // LoadLoad
+			// consumption is in order, so all slots up to the look ahead are free
+			producerLimit = index + lookAheadStep - 1;
+			writeToQueue(buffer, e, index, offset);
+			return true;
+		}
+		if (capacity == maxCapacity) {
+			// full size, use every slot like FastFlowQueue1
+			if (null != lvElement(buffer, offset)) {
+				return false;
+			}
+			writeToQueue(buffer, e, index, offset);
+			return true;
+		}
+		if (null == lvElement(buffer, calcOffset(index + 1, mask))) {
+			// keep the last free slot for the JUMP marker
+			writeToQueue(buffer, e, index, offset);
+			return true;
+		}
+		if (null != lvElement(buffer, offset)) {
+			return false;
+		}
+		resize(buffer, e, index, mask, offset);
+		return true;
+	}
+
+	private void resize(final E[] oldBuffer, final E e, final long index, final long oldMask, final long offset) {
+		final int newCapacity = (int) Math.min((oldMask + 1) * 2, maxCapacity);
+		final E[] newBuffer = allocate(newCapacity);
+		final long newMask = newCapacity - 1;
+		producerBuffer = newBuffer;
+		producerMask = newMask;
+		// the new buffer only holds elements from this index on, all of it is free
+		producerLimit = index + Math.min(newCapacity - 1, lookAheadStep(newCapacity));
+
+		soElement(newBuffer, calcOffset(index, newMask), e);
+		soElement(oldBuffer, nextBufferOffset(oldMask), newBuffer);
+		soElement(oldBuffer, offset, JUMP); // StoreStore, consumer will find the new buffer linked
+		soProducerIndex(index + 1);
+	}
+
+	private void writeToQueue(final E[] buffer, final E e, final long index, final long offset) {
+		soElement(buffer, offset, e); // StoreStore
+		soProducerIndex(index + 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E poll() {
+		E[] buffer = consumerBuffer;
+		final long index = consumerIndex;
+		long mask = consumerMask;
+		long offset = calcOffset(index, mask);
+		Object e = lvElement(buffer, offset); // LoadLoad
+		if (null == e) {
+			return null;
+		}
+		if (JUMP == e) {
+			buffer = nextConsumerBuffer(buffer, mask);
+			mask = consumerMask;
+			offset = calcOffset(index, mask);
+			e = lvElement(buffer, offset);
+		}
+		soElement(buffer, offset, null);
+		soConsumerIndex(index + 1);
+		return (E) e;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		E[] buffer = consumerBuffer;
+		long mask = consumerMask;
+		final long currentConsumerIndex = consumerIndex;
+		int n = 0;
+		for (; n < limit; n++) {
+			final long index = currentConsumerIndex + n;
+			long offset = calcOffset(index, mask);
+			Object e = lvElement(buffer, offset); // LoadLoad
+			if (null == e) {
+				break;
+			}
+			if (JUMP == e) {
+				buffer = nextConsumerBuffer(buffer, mask);
+				mask = consumerMask;
+				offset = calcOffset(index, mask);
+				e = lvElement(buffer, offset);
+			}
+			soElement(buffer, offset, null);
+			c.accept((E) e);
+		}
+		if (n > 0) {
+			soConsumerIndex(currentConsumerIndex + n);
+		}
+		return n;
+	}
+
+	@SuppressWarnings("unchecked")
+	private E[] nextConsumerBuffer(final E[] buffer, final long mask) {
+		final E[] next = (E[]) lvElement(buffer, nextBufferOffset(mask));
+		consumerBuffer = next;
+		consumerMask = next.length - 2;
+		return next;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E peek() {
+		E[] buffer = consumerBuffer;
+		final long index = consumerIndex;
+		final long mask = consumerMask;
+		Object e = lvElement(buffer, calcOffset(index, mask));
+		if (JUMP == e) {
+			buffer = nextConsumerBuffer(buffer, mask);
+			e = lvElement(buffer, calcOffset(index, consumerMask));
+		}
+		return (E) e;
+	}
+
+	@Override
+	public int size() {
+		return (int) (lvProducerIndex() - lvConsumerIndex());
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -16,6 +16,9 @@ package psy.lob.saw.queues.lamport;
 import java.util.Iterator;
 
 import psy.lob.saw.queues.common.CircularArrayQueue1;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.QueueIndices;
 
 /**
  * <ul>
@@ -23,7 +26,7 @@ import psy.lob.saw.queues.common.CircularArrayQueue1;
  * </ul>
  */
 
-public final class LamportQueue1<E> extends CircularArrayQueue1<E> {
+public final class LamportQueue1<E> extends CircularArrayQueue1<E> implements DrainableQueue<E>, QueueIndices {
 	private volatile long producerIndex = 0;
 	private volatile long consumerIndex = 0;
 	public LamportQueue1(final int capacity) {
@@ -46,6 +49,16 @@ public final class LamportQueue1<E> extends CircularArrayQueue1<E> {
 		this.consumerIndex = consumerIndex; // StoreLoad
 	}
 
+	@Override
+	public long producerIndex() {
+		return lvProducerIndex();
+	}
+
+	@Override
+	public long consumerIndex() {
+		return lvConsumerIndex();
+	}
+
 	@Override
 	public boolean offer(final E e) {
 		if (null == e) {
@@ -78,6 +91,24 @@ public final class LamportQueue1<E> extends CircularArrayQueue1<E> {
 		return e;
 	}
 
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		final long currentConsumerIndex = lvConsumerIndex(); // LoadLoad
+		final int n = (int) Math.min(lvProducerIndex() - currentConsumerIndex, limit); // LoadLoad
+		if (n <= 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			final int offset = calcOffset(currentConsumerIndex + i);
+			final E e = lpElement(offset);
+			spElement(offset, null);
+			c.accept(e);
+		}
+		svConsumerIndex(currentConsumerIndex + n); // StoreLoad
+		return n;
+	}
+
 	@Override
 	public E peek() {
 		final int offset = calcOffset(lvConsumerIndex());
@@ -19,6 +19,9 @@ import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicLong;
 
 import psy.lob.saw.queues.common.CircularArrayQueue1;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.QueueIndices;
 
 /**
  * <ul>
@@ -27,7 +30,7 @@ import psy.lob.saw.queues.common.CircularArrayQueue1;
  * volatile assignment.
  * </ul>
  */
-public final class LamportQueue2<E> extends CircularArrayQueue1<E> {
+public final class LamportQueue2<E> extends CircularArrayQueue1<E> implements DrainableQueue<E>, QueueIndices {
 	private final AtomicLong producerIndex = new AtomicLong();
 	private final AtomicLong consumerIndex = new AtomicLong();
 
@@ -51,6 +54,16 @@ public final class LamportQueue2<E> extends CircularArrayQueue1<E> {
 		consumerIndex.lazySet(index);
 	}
 
+	@Override
+	public long producerIndex() {
+		return lvProducerIndex();
+	}
+
+	@Override
+	public long consumerIndex() {
+		return lvConsumerIndex();
+	}
+
 	@Override
 	public boolean offer(final E e) {
 		if (null == e) {
@@ -83,6 +96,24 @@ public final class LamportQueue2<E> extends CircularArrayQueue1<E> {
 		return e;
 	}
 
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		final long currentConsumerIndex = lvConsumerIndex(); // LoadLoad
+		final int n = (int) Math.min(lvProducerIndex() - currentConsumerIndex, limit); // LoadLoad
+		if (n <= 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			final int offset = calcOffset(currentConsumerIndex + i);
+			final E e = lpElement(offset);
+			spElement(offset, null);
+			c.accept(e);
+		}
+		soConsumerIndex(currentConsumerIndex + n); // StoreStore
+		return n;
+	}
+
 	@Override
 	public E peek() {
 		final int offset = calcOffset(lvConsumerIndex());
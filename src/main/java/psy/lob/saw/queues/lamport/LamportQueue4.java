@@ -18,6 +18,9 @@ package psy.lob.saw.queues.lamport;
 import java.util.Iterator;
 
 import psy.lob.saw.queues.common.CircularArrayQueue3;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.QueueIndices;
 
 /**
  * <ul>
@@ -38,7 +41,7 @@ abstract class LamportQueue4Fields<E> extends CircularArrayQueue3<E> {
     }
 	
 }
-public final class LamportQueue4<E>  extends LamportQueue4Fields<E> {
+public final class LamportQueue4<E>  extends LamportQueue4Fields<E> implements DrainableQueue<E>, QueueIndices {
 	protected long p00, p01, p02, p03, p04, p05, p06, p07;
 	protected long p10, p11, p12, p13, p14, p15, p16, p17;
 	public LamportQueue4(final int capacity) {
@@ -61,6 +64,16 @@ public final class LamportQueue4<E>  extends LamportQueue4Fields<E> {
 		consumerIndex.lazySet(index);
 	}
 
+	@Override
+	public long producerIndex() {
+		return lvProducerIndex();
+	}
+
+	@Override
+	public long consumerIndex() {
+		return lvConsumerIndex();
+	}
+
 	@Override
 	public boolean offer(final E e) {
 		if (null == e) {
@@ -93,6 +106,24 @@ public final class LamportQueue4<E>  extends LamportQueue4Fields<E> {
 		return e;
 	}
 
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		final long currentConsumerIndex = lvConsumerIndex(); // LoadLoad
+		final int n = (int) Math.min(lvProducerIndex() - currentConsumerIndex, limit); // LoadLoad
+		if (n <= 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			final int offset = calcOffset(currentConsumerIndex + i);
+			final E e = lpElement(offset);
+			spElement(offset, null);
+			c.accept(e);
+		}
+		soConsumerIndex(currentConsumerIndex + n); // StoreStore
+		return n;
+	}
+
 	@Override
 	public E peek() {
 		final int offset = calcOffset(lvConsumerIndex());
@@ -18,6 +18,13 @@ import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
 import java.util.Iterator;
 
 import psy.lob.saw.queues.common.CircularArrayQueue4;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.FillableQueue;
+import psy.lob.saw.queues.common.Pow2;
+import psy.lob.saw.queues.common.QueueIndices;
+import psy.lob.saw.queues.common.RelaxedQueue;
+import psy.lob.saw.queues.common.Supplier;
 import psy.lob.saw.queues.common.UnsafeAccess;
 
 /**
@@ -38,11 +45,32 @@ abstract class LamportQueue5L1Pad<E> extends CircularArrayQueue4<E> {
 	}
 }
 
-abstract class LamportQueue5ConsumerIndex<E> extends LamportQueue5L1Pad<E> {
-	protected volatile long consumerIndex;
+abstract class LamportQueue5ConsumerFields<E> extends LamportQueue5L1Pad<E> {
+	protected final long clearMask;
+	// only used when clearing in batches
+	protected long consumerReadIndex;
 
-	public LamportQueue5ConsumerIndex(int capacity) {
+	public LamportQueue5ConsumerFields(int capacity, int clearBatch) {
 		super(capacity);
+		// a batch bigger than the queue would never be handed back to the producer
+		clearMask = Pow2.findNextPositivePowerOfTwo(Math.min(Math.max(1, clearBatch), capacity())) - 1;
+	}
+}
+
+abstract class LamportQueue5L2Pad<E> extends LamportQueue5ConsumerFields<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public LamportQueue5L2Pad(int capacity, int clearBatch) {
+		super(capacity, clearBatch);
+	}
+}
+
+abstract class LamportQueue5ConsumerIndex<E> extends LamportQueue5L2Pad<E> {
+	protected volatile long consumerIndex;
+
+	public LamportQueue5ConsumerIndex(int capacity, int clearBatch) {
+		super(capacity, clearBatch);
 	}
 }
 
@@ -50,26 +78,34 @@ abstract class LamportQueue5L3Pad<E> extends LamportQueue5ConsumerIndex<E> {
 	protected long p00, p01, p02, p03, p04, p05, p06, p07;
 	protected long p10, p11, p12, p13, p14, p15, p16, p17;
 
-	public LamportQueue5L3Pad(int capacity) {
-		super(capacity);
+	public LamportQueue5L3Pad(int capacity, int clearBatch) {
+		super(capacity, clearBatch);
 	}
 }
 
 abstract class LamportQueue5ProducerIndex<E> extends LamportQueue5L3Pad<E> {
 	protected volatile long producerIndex;
 
-	public LamportQueue5ProducerIndex(int capacity) {
-		super(capacity);
+	public LamportQueue5ProducerIndex(int capacity, int clearBatch) {
+		super(capacity, clearBatch);
 	}
 }
 
-public final class LamportQueue5<E> extends LamportQueue5ProducerIndex<E> {
+public final class LamportQueue5<E> extends LamportQueue5ProducerIndex<E> implements DrainableQueue<E>, FillableQueue<E>, RelaxedQueue<E>, QueueIndices {
 	protected long p00, p01, p02, p03, p04, p05, p06, p07;
 	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	/**
+	 * Slots read by the consumer are nulled and handed back to the producer clear.batch at a time, when the
+	 * consumer passes a batch boundary. With the default of 1 every poll clears its slot and publishes the
+	 * consumer index, as it always has, and the batch path is not taken.
+	 */
+	public static final int CLEAR_BATCH = Integer.getInteger("clear.batch", 1);
+	private final static long CONSUMER_READ_INDEX_OFFSET;
 	private final static long CONSUMER_INDEX_OFFSET;
 	private final static long PRODUCER_INDEX_OFFSET;
 	static {
 		try {
+			CONSUMER_READ_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(LamportQueue5ConsumerFields.class.getDeclaredField("consumerReadIndex"));
 			CONSUMER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(LamportQueue5ConsumerIndex.class.getDeclaredField("consumerIndex"));
 			PRODUCER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(LamportQueue5ProducerIndex.class.getDeclaredField("producerIndex"));
 		} catch (NoSuchFieldException e) {
@@ -77,9 +113,18 @@ public final class LamportQueue5<E> extends LamportQueue5ProducerIndex<E> {
 		}
 	}
 	public LamportQueue5(int capacity) {
-	    super(capacity);
+	    this(capacity, CLEAR_BATCH);
     }
 
+	/**
+	 * @param clearBatch how many slots the consumer clears at a time, rounded up to a power of 2 and capped at
+	 *            capacity. 16 covers a 64 byte cache line of compressed references. Up to clearBatch - 1 read
+	 *            elements stay referenced from the queue until the next boundary or {@link #clear()}.
+	 */
+	public LamportQueue5(int capacity, int clearBatch) {
+		super(capacity, clearBatch);
+	}
+
 	private long lvProducerIndex() {
 		return producerIndex;
 	}
@@ -88,6 +133,14 @@ public final class LamportQueue5<E> extends LamportQueue5ProducerIndex<E> {
 		UNSAFE.putOrderedLong(this, PRODUCER_INDEX_OFFSET, index);
 	}
 
+	private long lpProducerIndex() {
+		return UNSAFE.getLong(this, PRODUCER_INDEX_OFFSET);
+	}
+
+	private long lpConsumerIndex() {
+		return UNSAFE.getLong(this, CONSUMER_INDEX_OFFSET);
+	}
+
 	private long lvConsumerIndex() {
 		return consumerIndex;
 	}
@@ -96,6 +149,54 @@ public final class LamportQueue5<E> extends LamportQueue5ProducerIndex<E> {
 		UNSAFE.putOrderedLong(this, CONSUMER_INDEX_OFFSET, index);
 	}
 
+	private long lpConsumerReadIndex() {
+		return consumerReadIndex;
+	}
+
+	private long lvConsumerReadIndex() {
+		return UNSAFE.getLongVolatile(this, CONSUMER_READ_INDEX_OFFSET);
+	}
+
+	private void spConsumerReadIndex(long index) {
+		consumerReadIndex = index;
+	}
+
+	/**
+	 * @return where the consumer reads next, the read index is only kept when clearing in batches
+	 */
+	private long lpConsumerPosition() {
+		return clearMask == 0 ? lpConsumerIndex() : lpConsumerReadIndex();
+	}
+
+	/**
+	 * Everything before nextConsumerIndex has been read. Once we pass a clear batch boundary the slots up to
+	 * it are cleared and handed back to the producer.
+	 */
+	private void consumed(final long nextConsumerIndex) {
+		spConsumerReadIndex(nextConsumerIndex);
+		final long clearIndex = nextConsumerIndex & ~clearMask;
+		if (clearIndex > lpConsumerIndex()) {
+			clearTo(clearIndex);
+		}
+	}
+
+	private void clearTo(final long clearIndex) {
+		for (long i = lpConsumerIndex(); i < clearIndex; i++) {
+			soElement(calcOffset(i), null); // StoreStore, relaxedOffer only looks at the slot
+		}
+		soConsumerIndex(clearIndex); // StoreStore
+	}
+
+	@Override
+	public long producerIndex() {
+		return lvProducerIndex();
+	}
+
+	@Override
+	public long consumerIndex() {
+		return lvConsumerIndex();
+	}
+
 	@Override
 	public boolean offer(final E e) {
 		if (null == e) {
@@ -109,34 +210,161 @@ public final class LamportQueue5<E> extends LamportQueue5ProducerIndex<E> {
 		}
 
 		final long offset = calcOffset(currentProducerIndex);
-		spElement(offset, e);
+		soElement(offset, e); // StoreStore, relaxedPoll only looks at the slot
 		soProducerIndex(currentProducerIndex + 1); // StoreStore
 		return true;
 	}
 
+	/**
+	 * @return how many of the next limit slots are free, the consumer index is read once
+	 */
+	private int freeSlots(final long currentProducerIndex, final int limit) {
+		return (int) Math.min(capacity() - (currentProducerIndex - lvConsumerIndex()), limit); // LoadLoad
+	}
+
+	@Override
+	public int fill(final Supplier<E> s, final int limit) {
+		final long currentProducerIndex = lvProducerIndex(); // LoadLoad
+		final int n = freeSlots(currentProducerIndex, limit);
+		if (n <= 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			final E e = s.get();
+			if (null == e) {
+				soProducerIndex(currentProducerIndex + i);
+				throw new NullPointerException("Null is not a valid element");
+			}
+			soElement(calcOffset(currentProducerIndex + i), e);
+		}
+		soProducerIndex(currentProducerIndex + n); // StoreStore
+		return n;
+	}
+
+	@Override
+	public int offer(final E[] src, final int from, final int len) {
+		final long currentProducerIndex = lvProducerIndex(); // LoadLoad
+		final int n = freeSlots(currentProducerIndex, len);
+		if (n <= 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			final E e = src[from + i];
+			if (null == e) {
+				soProducerIndex(currentProducerIndex + i);
+				throw new NullPointerException("Null is not a valid element");
+			}
+			soElement(calcOffset(currentProducerIndex + i), e);
+		}
+		soProducerIndex(currentProducerIndex + n); // StoreStore
+		return n;
+	}
+
 	@Override
 	public E poll() {
-		final long currentConsumerIndex = lvConsumerIndex(); // LoadLoad
+		final long currentConsumerIndex = clearMask == 0 ? lvConsumerIndex() : lpConsumerReadIndex(); // LoadLoad
 		if (currentConsumerIndex >= lvProducerIndex()) { // LoadLoad
 			return null;
 		}
 
 		final long offset = calcOffset(currentConsumerIndex);
 		final E e = lpElement(offset);
-		spElement(offset, null);
-		soConsumerIndex(currentConsumerIndex + 1); // StoreStore
+		if (clearMask == 0) {
+			soElement(offset, null); // StoreStore, relaxedOffer only looks at the slot
+			soConsumerIndex(currentConsumerIndex + 1); // StoreStore
+		} else {
+			consumed(currentConsumerIndex + 1);
+		}
 		return e;
 	}
 
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		final long currentConsumerIndex = clearMask == 0 ? lvConsumerIndex() : lpConsumerReadIndex(); // LoadLoad
+		final int n = (int) Math.min(lvProducerIndex() - currentConsumerIndex, limit); // LoadLoad
+		if (n <= 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			final long offset = calcOffset(currentConsumerIndex + i);
+			final E e = lpElement(offset);
+			if (clearMask == 0) {
+				soElement(offset, null);
+			}
+			c.accept(e);
+		}
+		if (clearMask == 0) {
+			soConsumerIndex(currentConsumerIndex + n); // StoreStore
+		} else {
+			consumed(currentConsumerIndex + n);
+		}
+		return n;
+	}
+
+	/**
+	 * Poll everything, then clear the slots of elements read since the last clear batch boundary. Must be
+	 * called from the consumer thread.
+	 */
+	@Override
+	public void clear() {
+		while (poll() != null)
+			;
+		if (clearMask != 0) {
+			clearTo(lpConsumerReadIndex());
+		}
+	}
+
+	@Override
+	public boolean relaxedOffer(final E e) {
+		if (null == e) {
+			throw new NullPointerException("Null is not a valid element");
+		}
+
+		final long currentProducerIndex = lpProducerIndex();
+		final long offset = calcOffset(currentProducerIndex);
+		if (null != lvElement(offset)) { // LoadLoad
+			return false;
+		}
+		soElement(offset, e); // StoreStore
+		soProducerIndex(currentProducerIndex + 1);
+		return true;
+	}
+
+	@Override
+	public E relaxedPoll() {
+		final long currentConsumerIndex = lpConsumerPosition();
+		final long offset = calcOffset(currentConsumerIndex);
+		final E e = lvElement(offset); // LoadLoad
+		if (null == e) {
+			return null;
+		}
+		if (clearMask == 0) {
+			soElement(offset, null); // StoreStore
+			soConsumerIndex(currentConsumerIndex + 1);
+		} else {
+			consumed(currentConsumerIndex + 1);
+		}
+		return e;
+	}
+
+	@Override
+	public E relaxedPeek() {
+		return lvElement(calcOffset(lpConsumerPosition()));
+	}
+
 	@Override
 	public E peek() {
-		final long offset = calcOffset(lvConsumerIndex());
+		final long offset = calcOffset(clearMask == 0 ? lvConsumerIndex() : lpConsumerReadIndex());
 		return lpElement(offset);
 	}
 
 	@Override
 	public int size() {
-		return (int) (lvProducerIndex() - lvConsumerIndex());
+		// read but not yet cleared elements are not counted
+		return (int) (lvProducerIndex() - (clearMask == 0 ? lvConsumerIndex() : lvConsumerReadIndex()));
 	}
 
 	@Override
@@ -0,0 +1,273 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.mcring;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.util.Iterator;
+
+import psy.lob.saw.queues.common.CircularArrayQueue4;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.QueueIndices;
+import psy.lob.saw.queues.common.UnsafeAccess;
+
+abstract class MCRingQueue1L1Pad<E> extends CircularArrayQueue4<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public MCRingQueue1L1Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MCRingQueue1ConsumerIndex<E> extends MCRingQueue1L1Pad<E> {
+	protected volatile long consumerIndex;
+
+	public MCRingQueue1ConsumerIndex(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MCRingQueue1L2Pad<E> extends MCRingQueue1ConsumerIndex<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public MCRingQueue1L2Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MCRingQueue1ConsumerFields<E> extends MCRingQueue1L2Pad<E> {
+	protected long nextConsumerIndex;
+	protected long producerIndexCache;
+
+	public MCRingQueue1ConsumerFields(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MCRingQueue1L3Pad<E> extends MCRingQueue1ConsumerFields<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public MCRingQueue1L3Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MCRingQueue1ProducerIndex<E> extends MCRingQueue1L3Pad<E> {
+	protected volatile long producerIndex;
+
+	public MCRingQueue1ProducerIndex(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MCRingQueue1L4Pad<E> extends MCRingQueue1ProducerIndex<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public MCRingQueue1L4Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MCRingQueue1ProducerFields<E> extends MCRingQueue1L4Pad<E> {
+	protected long nextProducerIndex;
+	protected long consumerIndexCache;
+
+	public MCRingQueue1ProducerFields(int capacity) {
+		super(capacity);
+	}
+}
+
+/**
+ * MCRingBuffer (Lee, Bu, Chandranmenon) on top of CircularArrayQueue4, with the padded index and cache field
+ * layout copied from ThompsonQueue3:
+ * <ul>
+ * <li>Each side works off a local next index and a cache of the other side's index
+ * <li>The shared indices are only published every batchSize elements, so each side writes to the cache line
+ * the other side reads once per batch rather than on every element
+ * <li>The producer publishes on {@link #flush()} or when it finds the queue full
+ * <li>The consumer publishes when it runs out of elements. Elements written but not yet published are picked
+ * up from the buffer (slots are nulled by the consumer, as in FastFlow), so the consumer never waits on a
+ * producer which has stopped short of a batch
+ * </ul>
+ */
+public final class MCRingQueue1<E> extends MCRingQueue1ProducerFields<E> implements DrainableQueue<E>, QueueIndices {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("mc.batch.size", 16);
+	private final static long CONSUMER_INDEX_OFFSET;
+	private final static long PRODUCER_INDEX_OFFSET;
+	static {
+		try {
+			CONSUMER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(MCRingQueue1ConsumerIndex.class.getDeclaredField("consumerIndex"));
+			PRODUCER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(MCRingQueue1ProducerIndex.class.getDeclaredField("producerIndex"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	private final int batchSize;
+
+	public MCRingQueue1(int capacity) {
+		this(capacity, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * @param batchSize how many elements each side handles before publishing its index, capped at capacity
+	 */
+	public MCRingQueue1(int capacity, int batchSize) {
+		super(capacity);
+		this.batchSize = Math.max(1, Math.min(batchSize, capacity()));
+	}
+
+	private long lvProducerIndex() {
+		return producerIndex;
+	}
+
+	private long lpProducerIndex() {
+		return UNSAFE.getLong(this, PRODUCER_INDEX_OFFSET);
+	}
+
+	private void soProducerIndex(long index) {
+		UNSAFE.putOrderedLong(this, PRODUCER_INDEX_OFFSET, index);
+	}
+
+	private long lvConsumerIndex() {
+		return consumerIndex;
+	}
+
+	private long lpConsumerIndex() {
+		return UNSAFE.getLong(this, CONSUMER_INDEX_OFFSET);
+	}
+
+	private void soConsumerIndex(long index) {
+		UNSAFE.putOrderedLong(this, CONSUMER_INDEX_OFFSET, index);
+	}
+
+	@Override
+	public long producerIndex() {
+		return lvProducerIndex();
+	}
+
+	@Override
+	public long consumerIndex() {
+		return lvConsumerIndex();
+	}
+
+	@Override
+	public boolean offer(final E e) {
+		if (null == e) {
+			throw new NullPointerException("Null is not a valid element");
+		}
+
+		final long currentProducerIndex = nextProducerIndex;
+		final long wrapPoint = currentProducerIndex - capacity();
+		if (consumerIndexCache <= wrapPoint) {
+			consumerIndexCache = lvConsumerIndex();
+			if (consumerIndexCache <= wrapPoint) {
+				// the consumer will find the rest in the buffer, but let size() know
+				flush();
+				return false;
+			}
+		}
+
+		soElement(calcOffset(currentProducerIndex), e); // StoreStore, the consumer may find it before it is published
+		final long newProducerIndex = currentProducerIndex + 1;
+		nextProducerIndex = newProducerIndex;
+		if (newProducerIndex - lpProducerIndex() >= batchSize) {
+			soProducerIndex(newProducerIndex);
+		}
+		return true;
+	}
+
+	/**
+	 * Publish the elements offered since the last batch. Must be called from the producer thread.
+	 */
+	public void flush() {
+		final long currentProducerIndex = nextProducerIndex;
+		if (lpProducerIndex() != currentProducerIndex) {
+			soProducerIndex(currentProducerIndex);
+		}
+	}
+
+	/**
+	 * Consume the element at the consumer index, publishing the consumer index if a batch is done.
+	 */
+	private E consume(final long currentConsumerIndex, final E e) {
+		spElement(calcOffset(currentConsumerIndex), null);
+		final long newConsumerIndex = currentConsumerIndex + 1;
+		nextConsumerIndex = newConsumerIndex;
+		if (newConsumerIndex - lpConsumerIndex() >= batchSize) {
+			soConsumerIndex(newConsumerIndex); // StoreStore
+		}
+		return e;
+	}
+
+	/**
+	 * We've run out of published elements: take an unpublished one from the buffer if there is one, or publish
+	 * the consumer index so the producer sees it has all the room there is.
+	 */
+	private E pollUnpublished(final long currentConsumerIndex) {
+		final E e = lvElement(calcOffset(currentConsumerIndex)); // LoadLoad
+		if (null != e) {
+			return consume(currentConsumerIndex, e);
+		}
+		if (lpConsumerIndex() != currentConsumerIndex) {
+			soConsumerIndex(currentConsumerIndex); // StoreStore
+		}
+		return null;
+	}
+
+	@Override
+	public E poll() {
+		final long currentConsumerIndex = nextConsumerIndex;
+		if (currentConsumerIndex >= producerIndexCache) {
+			producerIndexCache = lvProducerIndex();
+			if (currentConsumerIndex >= producerIndexCache) {
+				return pollUnpublished(currentConsumerIndex);
+			}
+		}
+		return consume(currentConsumerIndex, lpElement(calcOffset(currentConsumerIndex)));
+	}
+
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		int n = 0;
+		E e;
+		while (n < limit && null != (e = poll())) {
+			c.accept(e);
+			n++;
+		}
+		return n;
+	}
+
+	@Override
+	public E peek() {
+		return lvElement(calcOffset(nextConsumerIndex));
+	}
+
+	@Override
+	public int size() {
+		// only counts what has been published
+		return (int) Math.max(0, lvProducerIndex() - lvConsumerIndex());
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		throw new UnsupportedOperationException();
+	}
+}
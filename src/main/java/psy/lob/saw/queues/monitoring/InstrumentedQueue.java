@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.monitoring;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Queue;
+
+import psy.lob.saw.queues.common.IndexCacheStats;
+
+abstract class InstrumentedQueuePrePad<E> extends AbstractQueue<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class InstrumentedQueueProducerFields<E> extends InstrumentedQueuePrePad<E> {
+	protected long offers;
+	protected long offerFails;
+	protected long maxSize;
+	protected long pollsCache;
+	protected long nextPollsRefresh;
+}
+
+abstract class InstrumentedQueueL1Pad<E> extends InstrumentedQueueProducerFields<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class InstrumentedQueueConsumerFields<E> extends InstrumentedQueueL1Pad<E> {
+	protected long polls;
+	protected long pollFails;
+}
+
+/**
+ * Counts what goes through an SPSC queue:
+ * <ul>
+ * <li>Each counter has a single writer, the producer or the consumer, and is kept on that side's padded
+ * cache line. Counters are updated with plain increments and ordered stores, no atomics
+ * <li>The max size watermark is tracked by the producer from a cached copy of the poll count. A stale cache
+ * can only overstate the size, so the cache is refreshed only when the size looks like a new high, at most
+ * once every {@link #POLLS_REFRESH_INTERVAL} offers and not at all once the watermark reaches capacity. A
+ * high lasting fewer offers than the interval may be missed
+ * <li>Index cache refreshes are reported for queues which count them (see {@link IndexCacheStats}), -1
+ * otherwise
+ * </ul>
+ * Counts may be read from any thread.
+ */
+public final class InstrumentedQueue<E> extends InstrumentedQueueConsumerFields<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	public final static int POLLS_REFRESH_INTERVAL = Integer.getInteger("instrumented.refresh.interval", 64);
+	private final static long OFFERS_OFFSET;
+	private final static long OFFER_FAILS_OFFSET;
+	private final static long MAX_SIZE_OFFSET;
+	private final static long POLLS_OFFSET;
+	private final static long POLL_FAILS_OFFSET;
+	static {
+		try {
+			OFFERS_OFFSET = UNSAFE.objectFieldOffset(InstrumentedQueueProducerFields.class.getDeclaredField("offers"));
+			OFFER_FAILS_OFFSET = UNSAFE.objectFieldOffset(InstrumentedQueueProducerFields.class.getDeclaredField("offerFails"));
+			MAX_SIZE_OFFSET = UNSAFE.objectFieldOffset(InstrumentedQueueProducerFields.class.getDeclaredField("maxSize"));
+			POLLS_OFFSET = UNSAFE.objectFieldOffset(InstrumentedQueueConsumerFields.class.getDeclaredField("polls"));
+			POLL_FAILS_OFFSET = UNSAFE.objectFieldOffset(InstrumentedQueueConsumerFields.class.getDeclaredField("pollFails"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	private final Queue<E> queue;
+	private final int capacity;
+
+	/**
+	 * @param capacity of the queue, Integer.MAX_VALUE if unbounded
+	 */
+	public InstrumentedQueue(Queue<E> queue, int capacity) {
+		this.queue = queue;
+		this.capacity = capacity;
+	}
+
+	public Queue<E> delegate() {
+		return queue;
+	}
+
+	@Override
+	public boolean offer(final E e) {
+		if (!queue.offer(e)) {
+			UNSAFE.putOrderedLong(this, OFFER_FAILS_OFFSET, offerFails + 1);
+			return false;
+		}
+		final long newOffers = offers + 1;
+		UNSAFE.putOrderedLong(this, OFFERS_OFFSET, newOffers);
+		if (maxSize < capacity && newOffers - pollsCache > maxSize && newOffers >= nextPollsRefresh) {
+			nextPollsRefresh = newOffers + POLLS_REFRESH_INTERVAL;
+			pollsCache = UNSAFE.getLongVolatile(this, POLLS_OFFSET);
+			final long size = newOffers - pollsCache;
+			if (size > maxSize) {
+				UNSAFE.putOrderedLong(this, MAX_SIZE_OFFSET, size);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		final E e = queue.poll();
+		if (null == e) {
+			UNSAFE.putOrderedLong(this, POLL_FAILS_OFFSET, pollFails + 1);
+		} else {
+			UNSAFE.putOrderedLong(this, POLLS_OFFSET, polls + 1);
+		}
+		return e;
+	}
+
+	@Override
+	public E peek() {
+		return queue.peek();
+	}
+
+	@Override
+	public int size() {
+		return queue.size();
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return queue.iterator();
+	}
+
+	public long offers() {
+		return UNSAFE.getLongVolatile(this, OFFERS_OFFSET);
+	}
+
+	public long offerFails() {
+		return UNSAFE.getLongVolatile(this, OFFER_FAILS_OFFSET);
+	}
+
+	public long polls() {
+		return UNSAFE.getLongVolatile(this, POLLS_OFFSET);
+	}
+
+	public long pollFails() {
+		return UNSAFE.getLongVolatile(this, POLL_FAILS_OFFSET);
+	}
+
+	/**
+	 * @return the highest size seen by the producer after an offer
+	 */
+	public long maxSize() {
+		return UNSAFE.getLongVolatile(this, MAX_SIZE_OFFSET);
+	}
+
+	public long consumerIndexCacheRefreshes() {
+		return queue instanceof IndexCacheStats ? ((IndexCacheStats) queue).consumerIndexCacheRefreshes() : -1;
+	}
+
+	public long producerIndexCacheRefreshes() {
+		return queue instanceof IndexCacheStats ? ((IndexCacheStats) queue).producerIndexCacheRefreshes() : -1;
+	}
+
+	@Override
+	public String toString() {
+		return queue.getClass().getSimpleName() + "[offers=" + offers() + ", offerFails=" + offerFails() + ", polls="
+				+ polls() + ", pollFails=" + pollFails() + ", maxSize=" + maxSize() + ", consumerIndexCacheRefreshes="
+				+ consumerIndexCacheRefreshes() + ", producerIndexCacheRefreshes=" + producerIndexCacheRefreshes()
+				+ "]";
+	}
+}
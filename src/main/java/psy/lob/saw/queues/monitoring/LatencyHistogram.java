@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.monitoring;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+/**
+ * A preallocated log-linear histogram of nanosecond values:
+ * <ul>
+ * <li>Values are bucketed by their highest set bit, each power of 2 range is split into HALF_SUB_BUCKETS linear
+ * buckets, so a value is recorded to within 1/HALF_SUB_BUCKETS (~3%) of itself
+ * <li>Values above MAX_VALUE (~18 minutes) are recorded as MAX_VALUE
+ * <li>There's a single writer, which records with plain increments and ordered stores. Any thread may take a
+ * {@link #copy()} and read percentiles off it
+ * </ul>
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS >> 1;
+	private static final int MAX_VALUE_BITS = 40;
+	public static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+	private static final int LENGTH = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 2) * HALF_SUB_BUCKETS;
+	private static final long ARRAY_BASE = UNSAFE.arrayBaseOffset(long[].class);
+	private static final int ELEMENT_SHIFT = 3;
+	private static final long COUNT_OFFSET;
+	private static final long MAX_OFFSET;
+	static {
+		try {
+			COUNT_OFFSET = UNSAFE.objectFieldOffset(LatencyHistogram.class.getDeclaredField("count"));
+			MAX_OFFSET = UNSAFE.objectFieldOffset(LatencyHistogram.class.getDeclaredField("max"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	private final long[] counts = new long[LENGTH];
+	private long count;
+	private long max;
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		} else if (value > MAX_VALUE) {
+			value = MAX_VALUE;
+		}
+		final long offset = ARRAY_BASE + ((long) index(value) << ELEMENT_SHIFT);
+		UNSAFE.putOrderedLong(counts, offset, UNSAFE.getLong(counts, offset) + 1);
+		if (value > max) {
+			UNSAFE.putOrderedLong(this, MAX_OFFSET, value);
+		}
+		UNSAFE.putOrderedLong(this, COUNT_OFFSET, count + 1);
+	}
+
+	private static int index(long value) {
+		// bucket 0 covers [0, SUB_BUCKETS) linearly, bucket n covers [SUB_BUCKETS << (n - 1), SUB_BUCKETS << n)
+		// in HALF_SUB_BUCKETS steps of 1 << n
+		final int bucket = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+		return bucket * HALF_SUB_BUCKETS + (int) (value >>> bucket);
+	}
+
+	private static long highestValue(int index) {
+		final int bucket = Math.max(0, index / HALF_SUB_BUCKETS - 1);
+		final long subBucket = index - bucket * HALF_SUB_BUCKETS;
+		return ((subBucket + 1) << bucket) - 1;
+	}
+
+	/**
+	 * @return a snapshot of this histogram, safe to take while values are being recorded
+	 */
+	public LatencyHistogram copy() {
+		final LatencyHistogram copy = new LatencyHistogram();
+		// count last, so the copy never claims more values than it has counts for
+		long total = 0;
+		for (int i = 0; i < LENGTH; i++) {
+			final long c = UNSAFE.getLongVolatile(counts, ARRAY_BASE + ((long) i << ELEMENT_SHIFT));
+			copy.counts[i] = c;
+			total += c;
+		}
+		copy.count = total;
+		copy.max = Math.min(UNSAFE.getLongVolatile(this, MAX_OFFSET), highestValue(maxIndex(copy.counts)));
+		return copy;
+	}
+
+	private static int maxIndex(long[] counts) {
+		for (int i = LENGTH - 1; i > 0; i--) {
+			if (counts[i] != 0) {
+				return i;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Add the counts of another histogram (e.g. a copy) to this one, only to be called from the writer thread.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < LENGTH; i++) {
+			final long offset = ARRAY_BASE + ((long) i << ELEMENT_SHIFT);
+			UNSAFE.putOrderedLong(counts, offset, UNSAFE.getLong(counts, offset) + other.counts[i]);
+		}
+		if (other.max > max) {
+			UNSAFE.putOrderedLong(this, MAX_OFFSET, other.max);
+		}
+		UNSAFE.putOrderedLong(this, COUNT_OFFSET, count + other.count);
+	}
+
+	/**
+	 * Clear all counts, only to be called from the writer thread.
+	 */
+	public void reset() {
+		for (int i = 0; i < LENGTH; i++) {
+			UNSAFE.putOrderedLong(counts, ARRAY_BASE + ((long) i << ELEMENT_SHIFT), 0L);
+		}
+		UNSAFE.putOrderedLong(this, MAX_OFFSET, 0L);
+		UNSAFE.putOrderedLong(this, COUNT_OFFSET, 0L);
+	}
+
+	public long count() {
+		return UNSAFE.getLongVolatile(this, COUNT_OFFSET);
+	}
+
+	public long max() {
+		return UNSAFE.getLongVolatile(this, MAX_OFFSET);
+	}
+
+	/**
+	 * @param percentile in the range [0, 100]
+	 * @return the highest value in the bucket at which the given percentile of recorded values is reached, 0 if
+	 *         nothing was recorded. Take a {@link #copy()} first if values are still being recorded.
+	 */
+	public long valueAtPercentile(double percentile) {
+		long total = 0;
+		for (int i = 0; i < LENGTH; i++) {
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		final long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+		long seen = 0;
+		for (int i = 0; i < LENGTH; i++) {
+			seen += counts[i];
+			if (seen >= target) {
+				return Math.min(highestValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count() + ", p50=" + valueAtPercentile(50) + ", p90=" + valueAtPercentile(90) + ", p99="
+				+ valueAtPercentile(99) + ", p99.9=" + valueAtPercentile(99.9) + ", p99.99="
+				+ valueAtPercentile(99.99) + ", max=" + max() + " (ns)";
+	}
+}
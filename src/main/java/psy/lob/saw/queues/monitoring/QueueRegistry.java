@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.monitoring;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers queues as {@link QueueStatsMXBean}s under psy.lob.saw.queues:type=Queue,name=&lt;name&gt;. Queues
+ * are only registered when asked to, and {@link #close()} unregisters everything this registry registered.
+ * Offers, polls and rates are read from the queue's indices for queues which expose them, wrap the queue in
+ * an {@link InstrumentedQueue} to count failures and the max size as well.
+ */
+public final class QueueRegistry implements Closeable {
+	public static final String DOMAIN = "psy.lob.saw.queues";
+	private final MBeanServer server;
+	private final Map<String, ObjectName> registered = new LinkedHashMap<String, ObjectName>();
+
+	public QueueRegistry() {
+		this(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	public QueueRegistry(MBeanServer server) {
+		this.server = server;
+	}
+
+	public static ObjectName objectName(String name) {
+		try {
+			return new ObjectName(DOMAIN + ":type=Queue,name=" + ObjectName.quote(name));
+		} catch (JMException e) {
+			throw new IllegalArgumentException("Invalid queue name: " + name, e);
+		}
+	}
+
+	public synchronized QueueStats register(String name, Queue<?> queue, int capacity) {
+		if (registered.containsKey(name)) {
+			throw new IllegalStateException("Queue " + name + " is already registered");
+		}
+		final ObjectName objectName = objectName(name);
+		final QueueStats stats = new QueueStats(queue, capacity);
+		try {
+			server.registerMBean(stats, objectName);
+		} catch (JMException e) {
+			throw new IllegalStateException("Failed to register queue " + name, e);
+		}
+		registered.put(name, objectName);
+		return stats;
+	}
+
+	public synchronized void unregister(String name) {
+		final ObjectName objectName = registered.remove(name);
+		if (objectName == null) {
+			return;
+		}
+		try {
+			server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			// unregistered behind our back, nothing left to clean up
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		for (String name : registered.keySet().toArray(new String[registered.size()])) {
+			unregister(name);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.monitoring;
+
+import java.util.Queue;
+
+import psy.lob.saw.queues.common.IndexCacheStats;
+import psy.lob.saw.queues.common.QueueIndices;
+
+/**
+ * The MXBean for a queue. Offers, polls and their rates are the queue's own indices (see
+ * {@link QueueIndices}), rates being the deltas between reads. Queues without indices fall back on the
+ * counts of an {@link InstrumentedQueue} they are in, or report -1. Failures and the max size are only
+ * counted if the queue is in an InstrumentedQueue. Nothing is recorded on the producer/consumer side for
+ * the rest, the size and indices are read only when JMX asks for them.
+ */
+public final class QueueStats implements QueueStatsMXBean {
+	private final Queue<?> queue;
+	private final InstrumentedQueue<?> counters;
+	private final Queue<?> delegate;
+	private final QueueIndices indices;
+	private final int capacity;
+	private long lastOfferTime = System.nanoTime();
+	private long lastOffers;
+	private long lastPollTime = lastOfferTime;
+	private long lastPolls;
+
+	public QueueStats(Queue<?> queue, int capacity) {
+		this.queue = queue;
+		this.counters = queue instanceof InstrumentedQueue ? (InstrumentedQueue<?>) queue : null;
+		this.delegate = counters != null ? counters.delegate() : queue;
+		this.indices = delegate instanceof QueueIndices ? (QueueIndices) delegate : null;
+		this.capacity = capacity;
+		lastOffers = offers();
+		lastPolls = polls();
+	}
+
+	/**
+	 * @return offers from the queue indices, or the InstrumentedQueue counts, -1 if neither is there
+	 */
+	private long offers() {
+		return indices != null ? indices.producerIndex() : counters != null ? counters.offers() : -1;
+	}
+
+	private long polls() {
+		return indices != null ? indices.consumerIndex() : counters != null ? counters.polls() : -1;
+	}
+
+	@Override
+	public String getQueueType() {
+		return delegate.getClass().getSimpleName();
+	}
+
+	@Override
+	public int getSize() {
+		return queue.size();
+	}
+
+	@Override
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public long getOffers() {
+		return offers();
+	}
+
+	@Override
+	public long getPolls() {
+		return polls();
+	}
+
+	@Override
+	public long getOfferFails() {
+		return counters != null ? counters.offerFails() : -1;
+	}
+
+	@Override
+	public long getPollFails() {
+		return counters != null ? counters.pollFails() : -1;
+	}
+
+	@Override
+	public long getMaxSize() {
+		return counters != null ? counters.maxSize() : -1;
+	}
+
+	@Override
+	public synchronized double getOfferRate() {
+		if (indices == null && counters == null) {
+			return -1;
+		}
+		final long now = System.nanoTime();
+		final long offers = offers();
+		final double rate = rate(offers - lastOffers, now - lastOfferTime);
+		lastOfferTime = now;
+		lastOffers = offers;
+		return rate;
+	}
+
+	@Override
+	public synchronized double getPollRate() {
+		if (indices == null && counters == null) {
+			return -1;
+		}
+		final long now = System.nanoTime();
+		final long polls = polls();
+		final double rate = rate(polls - lastPolls, now - lastPollTime);
+		lastPollTime = now;
+		lastPolls = polls;
+		return rate;
+	}
+
+	private static double rate(long delta, long nanos) {
+		return nanos <= 0 ? 0 : delta * 1e9 / nanos;
+	}
+
+	@Override
+	public double getOfferFailRatio() {
+		return counters != null ? ratio(counters.offerFails(), counters.offers()) : -1;
+	}
+
+	@Override
+	public double getPollFailRatio() {
+		return counters != null ? ratio(counters.pollFails(), counters.polls()) : -1;
+	}
+
+	private static double ratio(long fails, long successes) {
+		final long total = fails + successes;
+		return total == 0 ? 0 : (double) fails / total;
+	}
+
+	@Override
+	public long getConsumerIndexCacheRefreshes() {
+		return delegate instanceof IndexCacheStats ? ((IndexCacheStats) delegate).consumerIndexCacheRefreshes() : -1;
+	}
+
+	@Override
+	public long getProducerIndexCacheRefreshes() {
+		return delegate instanceof IndexCacheStats ? ((IndexCacheStats) delegate).producerIndexCacheRefreshes() : -1;
+	}
+}
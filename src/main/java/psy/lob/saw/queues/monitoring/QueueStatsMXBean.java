@@ -0,0 +1,42 @@
+package psy.lob.saw.queues.monitoring;
+
+/**
+ * What {@link QueueRegistry} exposes over JMX for each queue. Everything is sampled when read, rates are per
+ * second since the previous read of the same rate. Counters are -1 if the queue doesn't keep them: offers,
+ * polls and rates need a queue with readable indices, failures and the max size an {@link InstrumentedQueue}.
+ */
+public interface QueueStatsMXBean {
+	String getQueueType();
+
+	int getSize();
+
+	int getCapacity();
+
+	long getOffers();
+
+	long getPolls();
+
+	long getOfferFails();
+
+	long getPollFails();
+
+	long getMaxSize();
+
+	double getOfferRate();
+
+	double getPollRate();
+
+	/**
+	 * @return failed offers out of all offers
+	 */
+	double getOfferFailRatio();
+
+	/**
+	 * @return failed polls out of all polls
+	 */
+	double getPollFailRatio();
+
+	long getConsumerIndexCacheRefreshes();
+
+	long getProducerIndexCacheRefreshes();
+}
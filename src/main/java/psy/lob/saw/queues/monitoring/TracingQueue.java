@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.monitoring;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Queue;
+
+import psy.lob.saw.queues.common.Pow2;
+
+abstract class TracingQueuePrePad<E> extends AbstractQueue<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class TracingQueueProducerFields<E> extends TracingQueuePrePad<E> {
+	protected long offers;
+}
+
+abstract class TracingQueueL1Pad<E> extends TracingQueueProducerFields<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class TracingQueueConsumerFields<E> extends TracingQueueL1Pad<E> {
+	protected long polls;
+}
+
+/**
+ * Samples how long elements spend in an SPSC queue:
+ * <ul>
+ * <li>Every SAMPLE_RATE-th element offered is stamped with System.nanoTime() and its residence time is
+ * recorded into a preallocated {@link LatencyHistogram} when it is polled. Other elements cost a counter
+ * increment on each side
+ * <li>Elements are not wrapped, stamps are kept in a parallel long[] indexed by sequence like calcOffset.
+ * The queue is FIFO, so the n-th element polled is the n-th offered and finds its stamp at the same index
+ * <li>The stamp is written before the element is offered and so is published along with it. Stamps array is
+ * 2 queue capacities long (in samples), the producer can't get a full capacity ahead of the consumer so a
+ * stamp is never overwritten before it is read
+ * </ul>
+ * The underlying queue must be bounded by the given capacity, it works with the Lamport, Thompson and
+ * FastFlow queues (and the rest of the bounded SPSC queues). Snapshots may be taken from any thread.
+ */
+public final class TracingQueue<E> extends TracingQueueConsumerFields<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	/**
+	 * 1 in how many elements is traced, rounded up to a power of 2.
+	 */
+	public static final int SAMPLE_RATE = Integer.getInteger("trace.sample", 1024);
+	private static final long ARRAY_BASE = UNSAFE.arrayBaseOffset(long[].class);
+	private static final int ELEMENT_SHIFT = 3;
+	private final Queue<E> queue;
+	private final long sampleMask;
+	private final int sampleShift;
+	private final long stampMask;
+	private final long[] stamps;
+	private final LatencyHistogram residenceTimes = new LatencyHistogram();
+
+	public TracingQueue(Queue<E> queue, int capacity) {
+		this(queue, capacity, SAMPLE_RATE);
+	}
+
+	public TracingQueue(Queue<E> queue, int capacity, int sampleRate) {
+		if (capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Tracing needs a bounded queue, capacity: " + capacity);
+		}
+		this.queue = queue;
+		final int rate = Pow2.findNextPositivePowerOfTwo(Math.max(1, sampleRate));
+		sampleMask = rate - 1;
+		sampleShift = Integer.numberOfTrailingZeros(rate);
+		final int slots = Math.max(1, (Pow2.findNextPositivePowerOfTwo(capacity) << 1) >> sampleShift);
+		stampMask = slots - 1;
+		stamps = new long[slots];
+	}
+
+	public Queue<E> delegate() {
+		return queue;
+	}
+
+	private long calcStampOffset(final long index) {
+		return ARRAY_BASE + (((index >> sampleShift) & stampMask) << ELEMENT_SHIFT);
+	}
+
+	@Override
+	public boolean offer(final E e) {
+		final long currentOffers = offers;
+		if ((currentOffers & sampleMask) == 0) {
+			// a failed offer leaves a stamp which is overwritten on the next attempt
+			UNSAFE.putLong(stamps, calcStampOffset(currentOffers), System.nanoTime());
+		}
+		if (!queue.offer(e)) {
+			return false;
+		}
+		offers = currentOffers + 1;
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		final E e = queue.poll();
+		if (null == e) {
+			return null;
+		}
+		final long currentPolls = polls;
+		if ((currentPolls & sampleMask) == 0) {
+			residenceTimes.record(System.nanoTime() - UNSAFE.getLong(stamps, calcStampOffset(currentPolls)));
+		}
+		polls = currentPolls + 1;
+		return e;
+	}
+
+	@Override
+	public E peek() {
+		return queue.peek();
+	}
+
+	@Override
+	public int size() {
+		return queue.size();
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return queue.iterator();
+	}
+
+	public int sampleRate() {
+		return (int) sampleMask + 1;
+	}
+
+	/**
+	 * @return a snapshot of the sampled residence times so far
+	 */
+	public LatencyHistogram residenceTimes() {
+		return residenceTimes.copy();
+	}
+
+	@Override
+	public String toString() {
+		return queue.getClass().getSimpleName() + "[sampleRate=" + sampleRate() + ", residence " + residenceTimes()
+				+ "]";
+	}
+}
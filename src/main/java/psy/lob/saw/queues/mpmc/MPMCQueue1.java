@@ -0,0 +1,272 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.mpmc;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.util.Iterator;
+
+import psy.lob.saw.queues.common.CircularArrayQueue4;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.QueueIndices;
+import psy.lob.saw.queues.common.UnsafeAccess;
+
+/**
+ * <ul>
+ * <li>Multiple producers and consumers, each side claims slots with a CAS on its own index
+ * <li>Every slot has a sequence number telling producers/consumers if it is ready (D. Vyukov's bounded MPMC)
+ * <li>Sequence array is padded and accessed with the same Unsafe offset math as the element array
+ * <li>Inline padded atomic counters
+ * <li>Unsafe array access
+ * </ul>
+ */
+abstract class MPMCQueue1Sequence<E> extends CircularArrayQueue4<E> {
+	private static final int SEQUENCE_PAD = 8;
+	private static final long SEQUENCE_ARRAY_BASE;
+	private static final int SEQUENCE_SHIFT;
+	static {
+		final int scale = UnsafeAccess.UNSAFE.arrayIndexScale(long[].class);
+		if (8 == scale) {
+			SEQUENCE_SHIFT = 3;
+		} else {
+			throw new IllegalStateException("Unexpected long[] element size");
+		}
+		SEQUENCE_ARRAY_BASE = UnsafeAccess.UNSAFE.arrayBaseOffset(long[].class) + (SEQUENCE_PAD << SEQUENCE_SHIFT);
+	}
+	private final long sequenceMask;
+	private final long[] sequenceBuffer;
+
+	public MPMCQueue1Sequence(int capacity) {
+		super(capacity);
+		sequenceMask = capacity() - 1;
+		// padding + size + padding
+		sequenceBuffer = new long[capacity() + SEQUENCE_PAD * 2];
+		for (long i = 0; i < capacity(); i++) {
+			soSequence(calcSequenceOffset(i), i);
+		}
+	}
+
+	protected final long calcSequenceOffset(final long index) {
+		// same as calcOffset, but for the long[] sequence buffer
+		return SEQUENCE_ARRAY_BASE + ((index & sequenceMask) << SEQUENCE_SHIFT);
+	}
+
+	protected final void soSequence(final long offset, final long sequence) {
+		UNSAFE.putOrderedLong(sequenceBuffer, offset, sequence);
+	}
+
+	protected final long lvSequence(final long offset) {
+		return UNSAFE.getLongVolatile(sequenceBuffer, offset);
+	}
+}
+
+abstract class MPMCQueue1L1Pad<E> extends MPMCQueue1Sequence<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public MPMCQueue1L1Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MPMCQueue1ConsumerIndex<E> extends MPMCQueue1L1Pad<E> {
+	protected volatile long consumerIndex;
+
+	public MPMCQueue1ConsumerIndex(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MPMCQueue1L2Pad<E> extends MPMCQueue1ConsumerIndex<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public MPMCQueue1L2Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MPMCQueue1ProducerIndex<E> extends MPMCQueue1L2Pad<E> {
+	protected volatile long producerIndex;
+
+	public MPMCQueue1ProducerIndex(int capacity) {
+		super(capacity);
+	}
+}
+
+public final class MPMCQueue1<E> extends MPMCQueue1ProducerIndex<E> implements DrainableQueue<E>, QueueIndices {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	private final static long CONSUMER_INDEX_OFFSET;
+	private final static long PRODUCER_INDEX_OFFSET;
+	static {
+		try {
+			CONSUMER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(MPMCQueue1ConsumerIndex.class.getDeclaredField("consumerIndex"));
+			PRODUCER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(MPMCQueue1ProducerIndex.class.getDeclaredField("producerIndex"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	public MPMCQueue1(int capacity) {
+		super(capacity);
+	}
+
+	private long lvProducerIndex() {
+		return producerIndex;
+	}
+
+	private boolean casProducerIndex(long expect, long newValue) {
+		return UNSAFE.compareAndSwapLong(this, PRODUCER_INDEX_OFFSET, expect, newValue);
+	}
+
+	private long lvConsumerIndex() {
+		return consumerIndex;
+	}
+
+	private boolean casConsumerIndex(long expect, long newValue) {
+		return UNSAFE.compareAndSwapLong(this, CONSUMER_INDEX_OFFSET, expect, newValue);
+	}
+
+	@Override
+	public long producerIndex() {
+		return lvProducerIndex();
+	}
+
+	@Override
+	public long consumerIndex() {
+		return lvConsumerIndex();
+	}
+
+	@Override
+	public boolean offer(final E e) {
+		if (null == e) {
+			throw new NullPointerException("Null is not a valid element");
+		}
+
+		long currentProducerIndex;
+		long sequenceOffset;
+		while (true) {
+			currentProducerIndex = lvProducerIndex();
+			sequenceOffset = calcSequenceOffset(currentProducerIndex);
+			final long sequence = lvSequence(sequenceOffset); // LoadLoad
+			if (sequence < currentProducerIndex) {
+				// slot still holds the element from the previous wrap
+				if (currentProducerIndex - capacity() >= lvConsumerIndex()) {
+					return false;
+				}
+				// a consumer has claimed it but not yet released it, retry
+			} else if (sequence == currentProducerIndex
+					&& casProducerIndex(currentProducerIndex, currentProducerIndex + 1)) {
+				break;
+			}
+		}
+
+		spElement(calcOffset(currentProducerIndex), e);
+		soSequence(sequenceOffset, currentProducerIndex + 1); // StoreStore
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		long currentConsumerIndex;
+		long sequenceOffset;
+		while (true) {
+			currentConsumerIndex = lvConsumerIndex();
+			sequenceOffset = calcSequenceOffset(currentConsumerIndex);
+			final long sequence = lvSequence(sequenceOffset); // LoadLoad
+			final long expectedSequence = currentConsumerIndex + 1;
+			if (sequence < expectedSequence) {
+				// slot not yet written
+				if (currentConsumerIndex >= lvProducerIndex()) {
+					return null;
+				}
+				// a producer has claimed it but not yet published the element, retry
+			} else if (sequence == expectedSequence
+					&& casConsumerIndex(currentConsumerIndex, currentConsumerIndex + 1)) {
+				break;
+			}
+		}
+
+		final long offset = calcOffset(currentConsumerIndex);
+		final E e = lpElement(offset);
+		spElement(offset, null);
+		// release the slot for the producer on the next wrap
+		soSequence(sequenceOffset, currentConsumerIndex + capacity()); // StoreStore
+		return e;
+	}
+
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		if (limit <= 0) {
+			return 0;
+		}
+		long currentConsumerIndex;
+		int n;
+		while (true) {
+			currentConsumerIndex = lvConsumerIndex();
+			// count the run of published elements and claim them all with a single CAS
+			n = 0;
+			while (n < limit
+					&& lvSequence(calcSequenceOffset(currentConsumerIndex + n)) == currentConsumerIndex + n + 1) { // LoadLoad
+				n++;
+			}
+			if (n == 0) {
+				if (lvSequence(calcSequenceOffset(currentConsumerIndex)) <= currentConsumerIndex) {
+					// empty, or a producer has claimed the slot but not yet published the element. Unlike poll we
+					// don't wait for it.
+					return 0;
+				}
+				// another consumer got there first, retry
+			} else if (casConsumerIndex(currentConsumerIndex, currentConsumerIndex + n)) {
+				break;
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			final long index = currentConsumerIndex + i;
+			final long offset = calcOffset(index);
+			final E e = lpElement(offset);
+			spElement(offset, null);
+			// release the slot for the producer on the next wrap
+			soSequence(calcSequenceOffset(index), index + capacity()); // StoreStore
+			c.accept(e);
+		}
+		return n;
+	}
+
+	@Override
+	public E peek() {
+		long currentConsumerIndex;
+		E e;
+		do {
+			currentConsumerIndex = lvConsumerIndex();
+			if (currentConsumerIndex >= lvProducerIndex()) {
+				return null;
+			}
+			e = lvElement(calcOffset(currentConsumerIndex));
+		} while (null == e || currentConsumerIndex != lvConsumerIndex());
+		return e;
+	}
+
+	@Override
+	public int size() {
+		return (int) (lvProducerIndex() - lvConsumerIndex());
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		throw new UnsupportedOperationException();
+	}
+}
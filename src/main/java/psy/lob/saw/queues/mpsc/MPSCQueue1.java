@@ -0,0 +1,233 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.mpsc;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.util.Iterator;
+
+import psy.lob.saw.queues.common.CircularArrayQueue4;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.QueueIndices;
+import psy.lob.saw.queues.common.UnsafeAccess;
+
+/**
+ * <ul>
+ * <li>Multiple producers claim slots with a CAS on the producer index
+ * <li>Producers share a padded producer limit (a cache of consumer index + capacity)
+ * <li>Single consumer detects elements by slot null-ness, no producer index load on the fast path
+ * <li>Inline padded atomic counters
+ * <li>Unsafe array access
+ * </ul>
+ */
+abstract class MPSCQueue1L1Pad<E> extends CircularArrayQueue4<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public MPSCQueue1L1Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MPSCQueue1ConsumerIndex<E> extends MPSCQueue1L1Pad<E> {
+	protected volatile long consumerIndex;
+
+	public MPSCQueue1ConsumerIndex(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MPSCQueue1L2Pad<E> extends MPSCQueue1ConsumerIndex<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public MPSCQueue1L2Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MPSCQueue1ProducerIndex<E> extends MPSCQueue1L2Pad<E> {
+	protected volatile long producerIndex;
+
+	public MPSCQueue1ProducerIndex(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MPSCQueue1L3Pad<E> extends MPSCQueue1ProducerIndex<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public MPSCQueue1L3Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class MPSCQueue1ProducerLimit<E> extends MPSCQueue1L3Pad<E> {
+	protected volatile long producerLimit;
+
+	public MPSCQueue1ProducerLimit(int capacity) {
+		super(capacity);
+		producerLimit = capacity();
+	}
+}
+
+public final class MPSCQueue1<E> extends MPSCQueue1ProducerLimit<E> implements DrainableQueue<E>, QueueIndices {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	private final static long CONSUMER_INDEX_OFFSET;
+	private final static long PRODUCER_INDEX_OFFSET;
+	private final static long PRODUCER_LIMIT_OFFSET;
+	static {
+		try {
+			CONSUMER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(MPSCQueue1ConsumerIndex.class.getDeclaredField("consumerIndex"));
+			PRODUCER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(MPSCQueue1ProducerIndex.class.getDeclaredField("producerIndex"));
+			PRODUCER_LIMIT_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(MPSCQueue1ProducerLimit.class.getDeclaredField("producerLimit"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	public MPSCQueue1(int capacity) {
+		super(capacity);
+	}
+
+	private long lvProducerIndex() {
+		return producerIndex;
+	}
+
+	private boolean casProducerIndex(long expect, long newValue) {
+		return UNSAFE.compareAndSwapLong(this, PRODUCER_INDEX_OFFSET, expect, newValue);
+	}
+
+	private long lvProducerLimit() {
+		return producerLimit;
+	}
+
+	private void soProducerLimit(long limit) {
+		UNSAFE.putOrderedLong(this, PRODUCER_LIMIT_OFFSET, limit);
+	}
+
+	private long lvConsumerIndex() {
+		return consumerIndex;
+	}
+
+	private long lpConsumerIndex() {
+		return UNSAFE.getLong(this, CONSUMER_INDEX_OFFSET);
+	}
+
+	private void soConsumerIndex(long index) {
+		UNSAFE.putOrderedLong(this, CONSUMER_INDEX_OFFSET, index);
+	}
+
+	@Override
+	public long producerIndex() {
+		return lvProducerIndex();
+	}
+
+	@Override
+	public long consumerIndex() {
+		return lvConsumerIndex();
+	}
+
+	@Override
+	public boolean offer(final E e) {
+		if (null == e) {
+			throw new NullPointerException("Null is not a valid element");
+		}
+
+		long producerLimit = lvProducerLimit();
+		long currentProducerIndex;
+		do {
+			currentProducerIndex = lvProducerIndex();
+			if (currentProducerIndex >= producerLimit) {
+				// limit is only ever a conservative view of the consumer progress, racing producers
+				// may overwrite each other's refresh without harm
+				producerLimit = lvConsumerIndex() + capacity();
+				if (currentProducerIndex >= producerLimit) {
+					return false;
+				}
+				soProducerLimit(producerLimit);
+			}
+		} while (!casProducerIndex(currentProducerIndex, currentProducerIndex + 1));
+
+		// slot is claimed, the consumer will wait for the element to become visible
+		final long offset = calcOffset(currentProducerIndex);
+		soElement(offset, e); // StoreStore
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		final long currentConsumerIndex = lpConsumerIndex();
+		final long offset = calcOffset(currentConsumerIndex);
+		E e = lvElement(offset); // LoadLoad
+		if (null == e) {
+			if (currentConsumerIndex == lvProducerIndex()) {
+				return null;
+			}
+			// a producer has claimed the slot but not yet published the element
+			do {
+				e = lvElement(offset);
+			} while (null == e);
+		}
+		spElement(offset, null);
+		soConsumerIndex(currentConsumerIndex + 1); // StoreStore
+		return e;
+	}
+
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		final long currentConsumerIndex = lpConsumerIndex();
+		int n = 0;
+		for (; n < limit; n++) {
+			final long offset = calcOffset(currentConsumerIndex + n);
+			final E e = lvElement(offset); // LoadLoad
+			if (null == e) {
+				// empty, or a producer has claimed the slot but not yet published the element. Unlike poll we
+				// don't wait for it, the batch ends here.
+				break;
+			}
+			spElement(offset, null);
+			c.accept(e);
+		}
+		if (n > 0) {
+			soConsumerIndex(currentConsumerIndex + n); // StoreStore
+		}
+		return n;
+	}
+
+	@Override
+	public E peek() {
+		final long currentConsumerIndex = lpConsumerIndex();
+		final long offset = calcOffset(currentConsumerIndex);
+		E e = lvElement(offset);
+		if (null == e && currentConsumerIndex != lvProducerIndex()) {
+			do {
+				e = lvElement(offset);
+			} while (null == e);
+		}
+		return e;
+	}
+
+	@Override
+	public int size() {
+		return (int) (lvProducerIndex() - lvConsumerIndex());
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		throw new UnsupportedOperationException();
+	}
+}
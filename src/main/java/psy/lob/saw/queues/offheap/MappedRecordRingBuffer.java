@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.offheap;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import psy.lob.saw.queues.common.Pow2;
+
+/**
+ * A {@link RecordRingBuffer} in a memory mapped file, shared by a producer and a consumer in different
+ * processes (put the file under /dev/shm to keep it off the disk). The file starts with a metadata section
+ * followed by the ring:
+ * <pre>
+ * [magic, capacity, record size | producer heartbeat | consumer heartbeat | ring header | records]
+ * </pre>
+ * Each side attaches with its role. The ring indices live in the file, so either side can be restarted and
+ * will pick up from the last committed index. A record claimed but not committed by a side which then died
+ * is written/read again after it restarts.
+ * <p>
+ * Each side is expected to call {@link #heartbeat()} periodically (from any thread) so the other side can
+ * tell if it is still alive via {@link #isPeerAlive(long)}. Closing a ring detaches its side immediately.
+ */
+public final class MappedRecordRingBuffer extends RecordRingBuffer implements Closeable {
+	public enum Role {
+		PRODUCER, CONSUMER
+	}
+
+	private static final int MAGIC = 0x51525242; // 'QRRB'
+	private static final int MAGIC_OFFSET = 0;
+	private static final int CAPACITY_OFFSET = 4;
+	private static final int RECORD_SIZE_OFFSET = 8;
+	private static final int PRODUCER_HEARTBEAT_OFFSET = CACHE_LINE_PAIR;
+	private static final int CONSUMER_HEARTBEAT_OFFSET = CACHE_LINE_PAIR * 2;
+	public static final int METADATA_SIZE = CACHE_LINE_PAIR * 3;
+	private static final long BUFFER_ADDRESS_OFFSET;
+	static {
+		try {
+			BUFFER_ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// keeps the mapping alive for as long as the ring is reachable
+	private final MappedByteBuffer mapped;
+	private final long heartbeatAddress;
+	private final long peerHeartbeatAddress;
+	private boolean closed;
+
+	private MappedRecordRingBuffer(MappedByteBuffer mapped, long metadataAddress, int capacity, int recordSize,
+			Role role) {
+		super(metadataAddress + METADATA_SIZE, capacity, recordSize);
+		this.mapped = mapped;
+		if (role == Role.PRODUCER) {
+			heartbeatAddress = metadataAddress + PRODUCER_HEARTBEAT_OFFSET;
+			peerHeartbeatAddress = metadataAddress + CONSUMER_HEARTBEAT_OFFSET;
+		} else {
+			heartbeatAddress = metadataAddress + CONSUMER_HEARTBEAT_OFFSET;
+			peerHeartbeatAddress = metadataAddress + PRODUCER_HEARTBEAT_OFFSET;
+		}
+		heartbeat();
+	}
+
+	/**
+	 * Attach to the ring in the given file, creating it if it does not exist (or is empty). An existing file
+	 * must have been created with the same capacity and record size.
+	 */
+	public static MappedRecordRingBuffer attach(File file, int capacity, int recordSize, Role role)
+			throws IOException {
+		final long ringLength = requiredLength(capacity, recordSize);
+		final long length = METADATA_SIZE + ringLength;
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		final MappedByteBuffer mapped;
+		try {
+			final FileChannel channel = raf.getChannel();
+			// creating and validating under a file lock, so the two sides can't both initialize
+			channel.lock();
+			final boolean created = raf.length() == 0;
+			if (created) {
+				raf.setLength(length);
+			} else if (raf.length() != length) {
+				throw new IllegalStateException("Ring file " + file + " length is " + raf.length()
+						+ ", expected " + length);
+			}
+			mapped = channel.map(MapMode.READ_WRITE, 0, length);
+			final long metadataAddress = UNSAFE.getLong(mapped, BUFFER_ADDRESS_OFFSET);
+			final int alignedCapacity = Pow2.findNextPositivePowerOfTwo(capacity);
+			if (created) {
+				// the file is zero filled, so the indices and heartbeats start at 0
+				UNSAFE.putInt(metadataAddress + CAPACITY_OFFSET, alignedCapacity);
+				UNSAFE.putInt(metadataAddress + RECORD_SIZE_OFFSET, alignedRecordSize(recordSize));
+				UNSAFE.putOrderedInt(null, metadataAddress + MAGIC_OFFSET, MAGIC);
+			} else if (UNSAFE.getIntVolatile(null, metadataAddress + MAGIC_OFFSET) != MAGIC
+					|| UNSAFE.getInt(metadataAddress + CAPACITY_OFFSET) != alignedCapacity
+					|| UNSAFE.getInt(metadataAddress + RECORD_SIZE_OFFSET) != alignedRecordSize(recordSize)) {
+				throw new IllegalStateException("Ring file " + file + " does not match capacity=" + capacity
+						+ " recordSize=" + recordSize);
+			}
+			return new MappedRecordRingBuffer(mapped, metadataAddress, capacity, recordSize, role);
+		} finally {
+			// the mapping stays valid after the channel is closed, this also releases the lock
+			raf.close();
+		}
+	}
+
+	/**
+	 * Let the peer know this side is alive.
+	 */
+	public void heartbeat() {
+		UNSAFE.putOrderedLong(null, heartbeatAddress, System.currentTimeMillis());
+	}
+
+	/**
+	 * @return true if the peer is attached and has had a heartbeat within the timeout
+	 */
+	public boolean isPeerAlive(long timeoutMs) {
+		final long peerHeartbeat = UNSAFE.getLongVolatile(null, peerHeartbeatAddress);
+		return peerHeartbeat != 0 && System.currentTimeMillis() - peerHeartbeat <= timeoutMs;
+	}
+
+	/**
+	 * Detach this side. The file and the other side are left intact.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		UNSAFE.putLongVolatile(null, heartbeatAddress, 0L);
+		mapped.force();
+	}
+}
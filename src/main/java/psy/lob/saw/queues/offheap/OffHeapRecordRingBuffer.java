@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.offheap;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.io.Closeable;
+
+/**
+ * A {@link RecordRingBuffer} in memory allocated with Unsafe. The memory is not managed by the GC and must
+ * be released by calling {@link #close()} once both producer and consumer are done with it.
+ */
+public final class OffHeapRecordRingBuffer extends RecordRingBuffer implements Closeable {
+	private final long rawAddress;
+	private boolean closed;
+
+	public OffHeapRecordRingBuffer(int capacity, int recordSize) {
+		this(capacity, recordSize, false);
+	}
+
+	/**
+	 * @param preTouch if true every page of the ring is written to on construction, so the OS backs it with
+	 *            memory up front rather than on first use from the producer
+	 */
+	public OffHeapRecordRingBuffer(int capacity, int recordSize, boolean preTouch) {
+		this(allocate(requiredLength(capacity, recordSize)), capacity, recordSize, preTouch);
+	}
+
+	private OffHeapRecordRingBuffer(long rawAddress, int capacity, int recordSize, boolean preTouch) {
+		super(align(rawAddress), capacity, recordSize);
+		this.rawAddress = rawAddress;
+		if (preTouch) {
+			preTouch(address, requiredLength(capacity, recordSize));
+		}
+	}
+
+	private static long allocate(long length) {
+		// extra room for aligning to the cache line pair
+		final long rawAddress = UNSAFE.allocateMemory(length + CACHE_LINE_PAIR);
+		// indices must start at 0, the records are written before they are read
+		UNSAFE.setMemory(align(rawAddress), HEADER_SIZE, (byte) 0);
+		return rawAddress;
+	}
+
+	private static long align(long rawAddress) {
+		return (rawAddress + CACHE_LINE_PAIR - 1) & ~(CACHE_LINE_PAIR - 1);
+	}
+
+	private static void preTouch(long address, long length) {
+		final int pageSize = UNSAFE.pageSize();
+		for (long offset = HEADER_SIZE; offset < length; offset += pageSize) {
+			UNSAFE.putByte(address + offset, (byte) 0);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		UNSAFE.freeMemory(rawAddress);
+	}
+}
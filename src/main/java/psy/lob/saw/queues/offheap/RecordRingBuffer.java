@@ -0,0 +1,202 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.offheap;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import psy.lob.saw.queues.common.Pow2;
+
+abstract class RecordRingBufferPrePad {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class RecordRingBufferConfig extends RecordRingBufferPrePad {
+	protected final long address;
+	protected final long recordsAddress;
+	protected final int capacity;
+	protected final long mask;
+	protected final int recordSize;
+
+	public RecordRingBufferConfig(long address, int capacity, int recordSize) {
+		this.address = address;
+		this.recordsAddress = address + RecordRingBuffer.HEADER_SIZE;
+		this.capacity = Pow2.findNextPositivePowerOfTwo(capacity);
+		this.mask = this.capacity - 1;
+		this.recordSize = RecordRingBuffer.alignedRecordSize(recordSize);
+	}
+}
+
+abstract class RecordRingBufferL1Pad extends RecordRingBufferConfig {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public RecordRingBufferL1Pad(long address, int capacity, int recordSize) {
+		super(address, capacity, recordSize);
+	}
+}
+
+abstract class RecordRingBufferConsumerFields extends RecordRingBufferL1Pad {
+	protected long consumerIndex;
+	protected long producerIndexCache;
+
+	public RecordRingBufferConsumerFields(long address, int capacity, int recordSize) {
+		super(address, capacity, recordSize);
+	}
+}
+
+abstract class RecordRingBufferL2Pad extends RecordRingBufferConsumerFields {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public RecordRingBufferL2Pad(long address, int capacity, int recordSize) {
+		super(address, capacity, recordSize);
+	}
+}
+
+abstract class RecordRingBufferProducerFields extends RecordRingBufferL2Pad {
+	protected long producerIndex;
+	protected long consumerIndexCache;
+
+	public RecordRingBufferProducerFields(long address, int capacity, int recordSize) {
+		super(address, capacity, recordSize);
+	}
+}
+
+/**
+ * An SPSC ring of fixed size records in memory outside the Java heap. The shared producer/consumer indices
+ * are kept in a header at the start of the memory, each on its own pair of cache lines, followed by the
+ * records:
+ * <pre>
+ * [producer index | consumer index | record 0 | record 1 | ... | record (capacity - 1)]
+ * </pre>
+ * Each side keeps its own index and a cache of the other side's index in padded fields, as ThompsonQueue3
+ * does, so the shared header is only read when the cache runs out and only written on commit.
+ * <p>
+ * Records are written/read in place: claim returns the address of the record, which is accessed using
+ * Unsafe, and commit hands it over to the other side. A claim returns 0 if there's no record available.
+ */
+public abstract class RecordRingBuffer extends RecordRingBufferProducerFields {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	public static final int CACHE_LINE_PAIR = 128;
+	public static final int PRODUCER_INDEX_OFFSET = 0;
+	public static final int CONSUMER_INDEX_OFFSET = CACHE_LINE_PAIR;
+	public static final int HEADER_SIZE = CACHE_LINE_PAIR * 2;
+
+	protected RecordRingBuffer(long address, int capacity, int recordSize) {
+		super(address, capacity, recordSize);
+		// pick up from where the shared indices are, a new ring will have them zeroed
+		producerIndex = lvProducerIndex();
+		consumerIndex = lvConsumerIndex();
+		consumerIndexCache = consumerIndex;
+		producerIndexCache = producerIndex;
+	}
+
+	/**
+	 * Records are 8 byte aligned so that longs in them can be accessed atomically.
+	 */
+	static int alignedRecordSize(int recordSize) {
+		if (recordSize <= 0) {
+			throw new IllegalArgumentException("Record size must be positive: " + recordSize);
+		}
+		return (recordSize + 7) & ~7;
+	}
+
+	/**
+	 * @return the number of bytes needed for a ring of the given capacity/record size
+	 */
+	public static long requiredLength(int capacity, int recordSize) {
+		return HEADER_SIZE + (long) Pow2.findNextPositivePowerOfTwo(capacity) * alignedRecordSize(recordSize);
+	}
+
+	protected final long lvProducerIndex() {
+		return UNSAFE.getLongVolatile(null, address + PRODUCER_INDEX_OFFSET);
+	}
+
+	protected final void soProducerIndex(long index) {
+		UNSAFE.putOrderedLong(null, address + PRODUCER_INDEX_OFFSET, index);
+	}
+
+	protected final long lvConsumerIndex() {
+		return UNSAFE.getLongVolatile(null, address + CONSUMER_INDEX_OFFSET);
+	}
+
+	protected final void soConsumerIndex(long index) {
+		UNSAFE.putOrderedLong(null, address + CONSUMER_INDEX_OFFSET, index);
+	}
+
+	protected final long calcRecordAddress(final long index) {
+		return recordsAddress + (index & mask) * recordSize;
+	}
+
+	/**
+	 * @return the address of the next record to write, or 0 if the ring is full
+	 */
+	public final long writeClaim() {
+		final long currentProducerIndex = producerIndex;
+		final long wrapPoint = currentProducerIndex - capacity;
+		if (consumerIndexCache <= wrapPoint) {
+			consumerIndexCache = lvConsumerIndex();
+			if (consumerIndexCache <= wrapPoint) {
+				return 0;
+			}
+		}
+		return calcRecordAddress(currentProducerIndex);
+	}
+
+	/**
+	 * Publish the record returned from the last successful {@link #writeClaim()}.
+	 */
+	public final void writeCommit() {
+		final long nextProducerIndex = producerIndex + 1;
+		producerIndex = nextProducerIndex;
+		soProducerIndex(nextProducerIndex); // StoreStore
+	}
+
+	/**
+	 * @return the address of the next record to read, or 0 if the ring is empty
+	 */
+	public final long readClaim() {
+		final long currentConsumerIndex = consumerIndex;
+		if (currentConsumerIndex >= producerIndexCache) {
+			producerIndexCache = lvProducerIndex();
+			if (currentConsumerIndex >= producerIndexCache) {
+				return 0;
+			}
+		}
+		return calcRecordAddress(currentConsumerIndex);
+	}
+
+	/**
+	 * Release the record returned from the last successful {@link #readClaim()} back to the producer.
+	 */
+	public final void readCommit() {
+		final long nextConsumerIndex = consumerIndex + 1;
+		consumerIndex = nextConsumerIndex;
+		soConsumerIndex(nextConsumerIndex); // StoreStore
+	}
+
+	public final int size() {
+		return (int) (lvProducerIndex() - lvConsumerIndex());
+	}
+
+	public final int capacity() {
+		return capacity;
+	}
+
+	public final int recordSize() {
+		return recordSize;
+	}
+}
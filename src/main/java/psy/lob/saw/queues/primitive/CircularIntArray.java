@@ -0,0 +1,66 @@
+package psy.lob.saw.queues.primitive;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import psy.lob.saw.queues.common.Pow2;
+import psy.lob.saw.queues.common.UnsafeAccess;
+
+abstract class CircularIntArrayPrePad {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * The int[] counterpart of CircularArrayQueue4. A slot may span more than one int (e.g. a value and a
+ * flag), in which case the slot size is given as a power of 2 shift.
+ */
+public abstract class CircularIntArray extends CircularIntArrayPrePad {
+	private static final int BUFFER_PAD = 32;
+	protected static final long ARRAY_BASE;
+	protected static final int ELEMENT_SHIFT;
+	static {
+		final int scale = UnsafeAccess.UNSAFE.arrayIndexScale(int[].class);
+		if (4 == scale) {
+			ELEMENT_SHIFT = 2;
+		} else {
+			throw new IllegalStateException("Unexpected int[] element size");
+		}
+		ARRAY_BASE = UnsafeAccess.UNSAFE.arrayBaseOffset(int[].class) + (BUFFER_PAD << ELEMENT_SHIFT);
+	}
+	private final int capacity;
+	private final long mask;
+	private final int slotShift;
+	private final int[] buffer;
+
+	public CircularIntArray(int capacity, int slotShift) {
+		this.capacity = Pow2.findNextPositivePowerOfTwo(capacity);
+		mask = capacity() - 1;
+		this.slotShift = ELEMENT_SHIFT + slotShift;
+		// padding + size + padding
+		buffer = new int[(this.capacity << slotShift) + BUFFER_PAD * 2];
+	}
+
+	protected final void spElement(final long offset, final int e) {
+		UNSAFE.putInt(buffer, offset, e);
+	}
+
+	protected final int lpElement(final long offset) {
+		return UNSAFE.getInt(buffer, offset);
+	}
+
+	protected final void soElement(final long offset, final int e) {
+		UNSAFE.putOrderedInt(buffer, offset, e);
+	}
+
+	protected final int lvElement(final long offset) {
+		return UNSAFE.getIntVolatile(buffer, offset);
+	}
+
+	protected final long calcOffset(final long index) {
+		return ARRAY_BASE + ((index & mask) << slotShift);
+	}
+
+	public final int capacity() {
+		return capacity;
+	}
+}
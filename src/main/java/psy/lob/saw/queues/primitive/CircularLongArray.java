@@ -0,0 +1,66 @@
+package psy.lob.saw.queues.primitive;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import psy.lob.saw.queues.common.Pow2;
+import psy.lob.saw.queues.common.UnsafeAccess;
+
+abstract class CircularLongArrayPrePad {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * The long[] counterpart of CircularArrayQueue4. A slot may span more than one long (e.g. a value and a
+ * flag), in which case the slot size is given as a power of 2 shift.
+ */
+public abstract class CircularLongArray extends CircularLongArrayPrePad {
+	private static final int BUFFER_PAD = 16;
+	protected static final long ARRAY_BASE;
+	protected static final int ELEMENT_SHIFT;
+	static {
+		final int scale = UnsafeAccess.UNSAFE.arrayIndexScale(long[].class);
+		if (8 == scale) {
+			ELEMENT_SHIFT = 3;
+		} else {
+			throw new IllegalStateException("Unexpected long[] element size");
+		}
+		ARRAY_BASE = UnsafeAccess.UNSAFE.arrayBaseOffset(long[].class) + (BUFFER_PAD << ELEMENT_SHIFT);
+	}
+	private final int capacity;
+	private final long mask;
+	private final int slotShift;
+	private final long[] buffer;
+
+	public CircularLongArray(int capacity, int slotShift) {
+		this.capacity = Pow2.findNextPositivePowerOfTwo(capacity);
+		mask = capacity() - 1;
+		this.slotShift = ELEMENT_SHIFT + slotShift;
+		// padding + size + padding
+		buffer = new long[(this.capacity << slotShift) + BUFFER_PAD * 2];
+	}
+
+	protected final void spElement(final long offset, final long e) {
+		UNSAFE.putLong(buffer, offset, e);
+	}
+
+	protected final long lpElement(final long offset) {
+		return UNSAFE.getLong(buffer, offset);
+	}
+
+	protected final void soElement(final long offset, final long e) {
+		UNSAFE.putOrderedLong(buffer, offset, e);
+	}
+
+	protected final long lvElement(final long offset) {
+		return UNSAFE.getLongVolatile(buffer, offset);
+	}
+
+	protected final long calcOffset(final long index) {
+		return ARRAY_BASE + ((index & mask) << slotShift);
+	}
+
+	public final int capacity() {
+		return capacity;
+	}
+}
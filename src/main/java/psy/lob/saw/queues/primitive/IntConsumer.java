@@ -0,0 +1,5 @@
+package psy.lob.saw.queues.primitive;
+
+public interface IntConsumer {
+	void accept(int e);
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.primitive;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import psy.lob.saw.queues.common.UnsafeAccess;
+
+/**
+ * <ul>
+ * <li>LamportQueue5 for primitive ints, no boxing
+ * <li>Inlined counters
+ * <li>Counters are padded
+ * <li>Data is padded
+ * <li>Class is pre-padded
+ * <li>Use Unsafe for array access
+ * </ul>
+ */
+abstract class IntLamportQueueL1Pad extends CircularIntArray {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public IntLamportQueueL1Pad(int capacity) {
+		super(capacity, 0);
+	}
+}
+
+abstract class IntLamportQueueConsumerIndex extends IntLamportQueueL1Pad {
+	protected volatile long consumerIndex;
+
+	public IntLamportQueueConsumerIndex(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class IntLamportQueueL3Pad extends IntLamportQueueConsumerIndex {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public IntLamportQueueL3Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class IntLamportQueueProducerIndex extends IntLamportQueueL3Pad {
+	protected volatile long producerIndex;
+
+	public IntLamportQueueProducerIndex(int capacity) {
+		super(capacity);
+	}
+}
+
+public final class IntLamportQueue extends IntLamportQueueProducerIndex implements IntQueue {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	private final static long CONSUMER_INDEX_OFFSET;
+	private final static long PRODUCER_INDEX_OFFSET;
+	static {
+		try {
+			CONSUMER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(IntLamportQueueConsumerIndex.class.getDeclaredField("consumerIndex"));
+			PRODUCER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(IntLamportQueueProducerIndex.class.getDeclaredField("producerIndex"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	public IntLamportQueue(int capacity) {
+		super(capacity);
+	}
+
+	private long lvProducerIndex() {
+		return producerIndex;
+	}
+
+	private void soProducerIndex(long index) {
+		UNSAFE.putOrderedLong(this, PRODUCER_INDEX_OFFSET, index);
+	}
+
+	private long lvConsumerIndex() {
+		return consumerIndex;
+	}
+
+	private void soConsumerIndex(long index) {
+		UNSAFE.putOrderedLong(this, CONSUMER_INDEX_OFFSET, index);
+	}
+
+	@Override
+	public boolean offer(final int e) {
+		final long currentProducerIndex = lvProducerIndex(); // LoadLoad
+		final long wrapPoint = currentProducerIndex - capacity();
+		if (lvConsumerIndex() <= wrapPoint) { // LoadLoad
+			return false;
+		}
+
+		spElement(calcOffset(currentProducerIndex), e);
+		soProducerIndex(currentProducerIndex + 1); // StoreStore
+		return true;
+	}
+
+	@Override
+	public boolean poll(final IntConsumer c) {
+		final long currentConsumerIndex = lvConsumerIndex(); // LoadLoad
+		if (currentConsumerIndex >= lvProducerIndex()) { // LoadLoad
+			return false;
+		}
+
+		final int e = lpElement(calcOffset(currentConsumerIndex));
+		soConsumerIndex(currentConsumerIndex + 1); // StoreStore
+		c.accept(e);
+		return true;
+	}
+
+	@Override
+	public int drain(final IntConsumer c, final int limit) {
+		final long currentConsumerIndex = lvConsumerIndex(); // LoadLoad
+		final int n = (int) Math.min(lvProducerIndex() - currentConsumerIndex, limit); // LoadLoad
+		if (n <= 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			c.accept(lpElement(calcOffset(currentConsumerIndex + i)));
+		}
+		soConsumerIndex(currentConsumerIndex + n); // StoreStore
+		return n;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return lvConsumerIndex() >= lvProducerIndex();
+	}
+
+	@Override
+	public int size() {
+		return (int) (lvProducerIndex() - lvConsumerIndex());
+	}
+}
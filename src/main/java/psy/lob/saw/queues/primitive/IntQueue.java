@@ -0,0 +1,30 @@
+package psy.lob.saw.queues.primitive;
+
+/**
+ * A queue of primitive ints. There is no value reserved to mean 'empty', instead poll hands the element
+ * to the consumer and reports if there was one.
+ */
+public interface IntQueue {
+	/**
+	 * @return false if the queue is full
+	 */
+	boolean offer(int e);
+
+	/**
+	 * @return false if the queue is empty, otherwise the element is passed to the consumer
+	 */
+	boolean poll(IntConsumer c);
+
+	/**
+	 * Pass up to limit elements to the consumer, in order.
+	 *
+	 * @return the number of elements drained, 0 if the queue is empty
+	 */
+	int drain(IntConsumer c, int limit);
+
+	boolean isEmpty();
+
+	int size();
+
+	int capacity();
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.primitive;
+
+/**
+ * <ul>
+ * <li>FastFlowQueue2 for primitive longs, no boxing
+ * <li>A slot is a value followed by a full/empty flag, the flag takes the place of the null check
+ * <li>Producer look ahead on the flags
+ * <li>Inlined counters
+ * <li>Counters are padded
+ * <li>Data is padded
+ * <li>Class is pre-padded
+ * <li>Use Unsafe for array access
+ * </ul>
+ */
+abstract class LongFastFlowQueueL1Pad extends CircularLongArray {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public LongFastFlowQueueL1Pad(int capacity) {
+		// value + flag
+		super(capacity, 1);
+	}
+}
+
+abstract class LongFastFlowQueueTailField extends LongFastFlowQueueL1Pad {
+	protected long consumerIndex;
+
+	public LongFastFlowQueueTailField(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class LongFastFlowQueueL3Pad extends LongFastFlowQueueTailField {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public LongFastFlowQueueL3Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class LongFastFlowQueueHeadField extends LongFastFlowQueueL3Pad {
+	protected final int lookAhead;
+	protected long producerIndex;
+	protected long lookAheadCache;
+
+	public LongFastFlowQueueHeadField(int capacity) {
+		super(capacity);
+		lookAhead = Math.max(1, Math.min(LongFastFlowQueue.OFFER_LOOK_AHEAD, capacity() / 4));
+	}
+}
+
+public final class LongFastFlowQueue extends LongFastFlowQueueHeadField implements LongQueue {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	protected static final int OFFER_LOOK_AHEAD = Integer.getInteger("offer.batch.size", 4096);
+	// the flag follows the value in the slot
+	private static final long FLAG_DELTA = 1 << ELEMENT_SHIFT;
+	private static final long EMPTY = 0;
+	private static final long FULL = 1;
+
+	public LongFastFlowQueue(int capacity) {
+		super(capacity);
+	}
+
+	@Override
+	public boolean offer(final long e) {
+		if (lookAheadCache < producerIndex) {
+			final long lookAheadOffset = calcOffset(producerIndex + lookAhead);
+			if (EMPTY != lvElement(lookAheadOffset + FLAG_DELTA)) { // LoadLoad
+				return false;
+			} else {
+				lookAheadCache = producerIndex + lookAhead;
+			}
+		}
+		final long offset = calcOffset(producerIndex);
+		spElement(offset, e);
+		soElement(offset + FLAG_DELTA, FULL); // StoreStore
+		producerIndex++;
+		return true;
+	}
+
+	@Override
+	public boolean poll(final LongConsumer c) {
+		final long offset = calcOffset(consumerIndex);
+		if (EMPTY == lvElement(offset + FLAG_DELTA)) { // LoadLoad
+			return false;
+		}
+		final long e = lpElement(offset);
+		soElement(offset + FLAG_DELTA, EMPTY); // StoreStore
+		consumerIndex++;
+		c.accept(e);
+		return true;
+	}
+
+	@Override
+	public int drain(final LongConsumer c, final int limit) {
+		int n = 0;
+		while (n < limit) {
+			final long offset = calcOffset(consumerIndex);
+			if (EMPTY == lvElement(offset + FLAG_DELTA)) { // LoadLoad
+				break;
+			}
+			final long e = lpElement(offset);
+			soElement(offset + FLAG_DELTA, EMPTY); // StoreStore
+			consumerIndex++;
+			c.accept(e);
+			n++;
+		}
+		return n;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return EMPTY == lvElement(calcOffset(consumerIndex) + FLAG_DELTA);
+	}
+
+	@Override
+	public int size() {
+		// This won't work very well :(
+		return (int) (producerIndex - consumerIndex);
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package psy.lob.saw.queues.spmc;
+
+import static psy.lob.saw.queues.common.UnsafeAccess.UNSAFE;
+
+import java.util.Iterator;
+
+import psy.lob.saw.queues.common.CircularArrayQueue4;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.QueueIndices;
+import psy.lob.saw.queues.common.UnsafeAccess;
+
+/**
+ * <ul>
+ * <li>Single producer is wait free, it writes to a slot once it is null, same as FastFlow, and publishes the
+ * producer index for the consumers
+ * <li>Multiple consumers read the element, claim it with a CAS on the consumer index and then null the slot.
+ * Only the consumer which claimed a slot nulls it, the producer can't reuse it before then
+ * <li>Consumers share a padded producer index cache, written with an ordered store and read with a volatile
+ * load, so a consumer going by another consumer's cached value also sees the elements it covers
+ * <li>Inline padded atomic counters
+ * <li>Unsafe array access
+ * </ul>
+ */
+abstract class SPMCQueue1L1Pad<E> extends CircularArrayQueue4<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public SPMCQueue1L1Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class SPMCQueue1ConsumerIndex<E> extends SPMCQueue1L1Pad<E> {
+	protected volatile long consumerIndex;
+
+	public SPMCQueue1ConsumerIndex(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class SPMCQueue1L2Pad<E> extends SPMCQueue1ConsumerIndex<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public SPMCQueue1L2Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class SPMCQueue1HeadCache<E> extends SPMCQueue1L2Pad<E> {
+	protected long producerIndexCache;
+
+	public SPMCQueue1HeadCache(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class SPMCQueue1L3Pad<E> extends SPMCQueue1HeadCache<E> {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public SPMCQueue1L3Pad(int capacity) {
+		super(capacity);
+	}
+}
+
+abstract class SPMCQueue1ProducerIndex<E> extends SPMCQueue1L3Pad<E> {
+	protected volatile long producerIndex;
+
+	public SPMCQueue1ProducerIndex(int capacity) {
+		super(capacity);
+	}
+}
+
+public final class SPMCQueue1<E> extends SPMCQueue1ProducerIndex<E> implements DrainableQueue<E>, QueueIndices {
+	protected long p00, p01, p02, p03, p04, p05, p06, p07;
+	protected long p10, p11, p12, p13, p14, p15, p16, p17;
+	private final static long CONSUMER_INDEX_OFFSET;
+	private final static long PRODUCER_INDEX_OFFSET;
+	private final static long PRODUCER_INDEX_CACHE_OFFSET;
+	static {
+		try {
+			CONSUMER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(SPMCQueue1ConsumerIndex.class.getDeclaredField("consumerIndex"));
+			PRODUCER_INDEX_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(SPMCQueue1ProducerIndex.class.getDeclaredField("producerIndex"));
+			PRODUCER_INDEX_CACHE_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(SPMCQueue1HeadCache.class.getDeclaredField("producerIndexCache"));
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	public SPMCQueue1(int capacity) {
+		super(capacity);
+	}
+
+	private long lvProducerIndex() {
+		return producerIndex;
+	}
+
+	private void soProducerIndex(long index) {
+		UNSAFE.putOrderedLong(this, PRODUCER_INDEX_OFFSET, index);
+	}
+
+	private long lvConsumerIndex() {
+		return consumerIndex;
+	}
+
+	private boolean casConsumerIndex(long expect, long newValue) {
+		return UNSAFE.compareAndSwapLong(this, CONSUMER_INDEX_OFFSET, expect, newValue);
+	}
+
+	private long lvProducerIndexCache() {
+		return UNSAFE.getLongVolatile(this, PRODUCER_INDEX_CACHE_OFFSET);
+	}
+
+	private void soProducerIndexCache(long index) {
+		UNSAFE.putOrderedLong(this, PRODUCER_INDEX_CACHE_OFFSET, index);
+	}
+
+	@Override
+	public long producerIndex() {
+		return lvProducerIndex();
+	}
+
+	@Override
+	public long consumerIndex() {
+		return lvConsumerIndex();
+	}
+
+	@Override
+	public boolean offer(final E e) {
+		if (null == e) {
+			throw new NullPointerException("Null is not a valid element");
+		}
+
+		final long currentProducerIndex = lvProducerIndex();
+		final long offset = calcOffset(currentProducerIndex);
+		// the consumer which claimed the previous element in this slot nulls it once done with it, checking
+		// the consumer index would let us overwrite an element claimed but not yet read
+		if (null != lvElement(offset)) {
+			return false;
+		}
+		soElement(offset, e);
+		soProducerIndex(currentProducerIndex + 1);
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		long currentConsumerIndex;
+		E e;
+		long offset;
+		do {
+			currentConsumerIndex = lvConsumerIndex();
+			if (currentConsumerIndex >= lvProducerIndexCache()) {
+				final long currentProducerIndex = lvProducerIndex();
+				if (currentConsumerIndex >= currentProducerIndex) {
+					return null;
+				}
+				// shared between consumers, a racing stale write only makes the cache more conservative
+				soProducerIndexCache(currentProducerIndex);
+			}
+			offset = calcOffset(currentConsumerIndex);
+			e = lvElement(offset);
+			// null if another consumer has claimed and consumed the element since we read the index
+		} while (null == e || !casConsumerIndex(currentConsumerIndex, currentConsumerIndex + 1));
+		soElement(offset, null);
+		return e;
+	}
+
+	/**
+	 * The producer can't reuse a slot until the consumer which claimed it has nulled it, so the whole batch
+	 * up to the producer index is claimed with a single CAS and read after.
+	 */
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		final long currentProducerIndex = lvProducerIndex();
+		long currentConsumerIndex;
+		int n;
+		do {
+			currentConsumerIndex = lvConsumerIndex();
+			n = (int) Math.min(limit, currentProducerIndex - currentConsumerIndex);
+			if (n <= 0) {
+				return 0;
+			}
+		} while (!casConsumerIndex(currentConsumerIndex, currentConsumerIndex + n));
+		for (int i = 0; i < n; i++) {
+			final long offset = calcOffset(currentConsumerIndex + i);
+			final E e = lvElement(offset);
+			soElement(offset, null);
+			c.accept(e);
+		}
+		return n;
+	}
+
+	@Override
+	public E peek() {
+		long currentConsumerIndex;
+		E e;
+		do {
+			currentConsumerIndex = lvConsumerIndex();
+			if (currentConsumerIndex >= lvProducerIndex()) {
+				return null;
+			}
+			e = lvElement(calcOffset(currentConsumerIndex));
+		} while (currentConsumerIndex != lvConsumerIndex());
+		return e;
+	}
+
+	@Override
+	public int size() {
+		return (int) (lvProducerIndex() - lvConsumerIndex());
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		throw new UnsupportedOperationException();
+	}
+}
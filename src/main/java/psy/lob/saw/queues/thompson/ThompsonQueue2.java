@@ -18,6 +18,9 @@ package psy.lob.saw.queues.thompson;
 import java.util.Iterator;
 
 import psy.lob.saw.queues.common.CircularArrayQueue4;
+import psy.lob.saw.queues.common.Consumer;
+import psy.lob.saw.queues.common.DrainableQueue;
+import psy.lob.saw.queues.common.QueueIndices;
 import psy.lob.saw.queues.lamport.VolatileLongCell;
 
 /**
@@ -43,7 +46,7 @@ abstract class ThompsonQueue2Fields<E> extends CircularArrayQueue4<E> {
     }
 	
 }
-public final class ThompsonQueue2<E>  extends ThompsonQueue2Fields<E> {
+public final class ThompsonQueue2<E>  extends ThompsonQueue2Fields<E> implements DrainableQueue<E>, QueueIndices {
 	protected long p00, p01, p02, p03, p04, p05, p06, p07;
 	protected long p10, p11, p12, p13, p14, p15, p16, p17;
 	public ThompsonQueue2(final int capacity) {
@@ -81,6 +84,16 @@ public final class ThompsonQueue2<E>  extends ThompsonQueue2Fields<E> {
 		producerIndexCache.set(index);
 	}
 
+	@Override
+	public long producerIndex() {
+		return lvProducerIndex();
+	}
+
+	@Override
+	public long consumerIndex() {
+		return lvConsumerIndex();
+	}
+
 	@Override
 	public boolean offer(final E e) {
 		if (null == e) {
@@ -119,6 +132,27 @@ public final class ThompsonQueue2<E>  extends ThompsonQueue2Fields<E> {
 		return e;
 	}
 
+	@Override
+	public int drain(final Consumer<E> c, final int limit) {
+		final long currentConsumerIndex = lvConsumerIndex();
+		if (lpProducerIndexCache() - currentConsumerIndex < limit) {
+			spProducerIndexCache(lvProducerIndex());
+		}
+		final int n = (int) Math.min(lpProducerIndexCache() - currentConsumerIndex, limit);
+		if (n <= 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			final long offset = calcOffset(currentConsumerIndex + i);
+			final E e = lpElement(offset);
+			spElement(offset, null);
+			c.accept(e);
+		}
+		soConsumerIndex(currentConsumerIndex + n);
+		return n;
+	}
+
 	@Override
 	public E peek() {
 		final long offset = calcOffset(lvConsumerIndex());